@@ -67,6 +67,7 @@ export async function activate(context: ExtensionContext) {
     commands.registerCommand('java.command.test.run', runTest);
     commands.registerCommand('java.command.test.debug', debugTest);
     commands.registerCommand('java.command.findReferences', runFindReferences);
+    commands.registerCommand('java.command.findImplementations', runFindImplementations);
 
 	// When the language client activates, register a progress-listener
     client.onReady().then(() => createProgressListeners(client));
@@ -163,6 +164,13 @@ function runFindReferences(uri: string, lineNumber: number, column: number) {
     return commands.executeCommand('editor.action.findReferences', Uri.parse(uri), {lineNumber: lineNumber+1, column: column+1});
 }
 
+async function runFindImplementations(uri: string, lineNumber: number, column: number) {
+    const file = Uri.parse(uri);
+    const position = new Position(lineNumber, column);
+    const locations = await commands.executeCommand('vscode.executeImplementationProvider', file, position);
+    return commands.executeCommand('editor.action.showReferences', file, position, locations);
+}
+
 interface JavaTestTask extends TaskDefinition {
     className: string
     methodName: string
@@ -0,0 +1,85 @@
+import com.sun.source.util.JavacTask;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Measures how long javac takes to compile a file with thousands of errors, and how long it takes to convert the
+ * diagnostics the way ErrorProvider does, with and without an error budget.
+ *
+ * <p>Usage: java scripts/ErrorBudgetBenchmark.java [errors] [budget] [cap], where budget is the -Xmaxerrs and
+ * -Xmaxwarns value, "unlimited", or "default" to pass neither flag, like the language server used to, and cap is the
+ * number of diagnostics converted per file.
+ */
+public class ErrorBudgetBenchmark {
+    public static void main(String[] args) throws Exception {
+        var errors = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        var budget = args.length > 1 ? args[1] : "unlimited";
+        var cap = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+        var file = generate(errors);
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        for (var run = 0; run < 5; run++) {
+            var diags = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+            var fileManager = compiler.getStandardFileManager(null, null, null);
+            var options = new ArrayList<String>(List.of("-proc:none", "-Xlint:all"));
+            if (!budget.equals("default")) {
+                var limit = budget.equals("unlimited") ? Integer.toString(Integer.MAX_VALUE) : budget;
+                options.addAll(List.of("-Xmaxerrs", limit, "-Xmaxwarns", limit));
+            }
+            var started = System.nanoTime();
+            var sources = fileManager.getJavaFileObjects(file);
+            var task = (JavacTask) compiler.getTask(null, fileManager, diags::add, options, null, sources);
+            var root = task.parse().iterator().next();
+            task.analyze();
+            var compiled = System.nanoTime();
+            var lines = root.getLineMap();
+            long sink = 0;
+            // Like ErrorProvider: errors first, up to the cap, and only render the messages that are kept
+            var kept = 0;
+            for (var errorsFirst = 0; errorsFirst < 2; errorsFirst++) {
+                for (var d : diags) {
+                    if (kept == cap) break;
+                    var isError = d.getKind() == Diagnostic.Kind.ERROR;
+                    if (isError != (errorsFirst == 0)) continue;
+                    kept++;
+                    var start = d.getStartPosition();
+                    var end = d.getEndPosition();
+                    sink += lines.getLineNumber(start) + lines.getColumnNumber(start);
+                    if (end != start) sink += lines.getLineNumber(end) + lines.getColumnNumber(end);
+                    sink += d.getMessage(Locale.getDefault()).length();
+                }
+            }
+            var converted = System.nanoTime();
+            System.out.printf(
+                    "budget %s, cap %s: %d diagnostics, kept %d, compile %d ms, convert %d ms (%d)%n",
+                    budget,
+                    cap == Integer.MAX_VALUE ? "none" : cap,
+                    diags.size(),
+                    kept,
+                    (compiled - started) / 1_000_000,
+                    (converted - compiled) / 1_000_000,
+                    sink % 10);
+        }
+    }
+
+    /** Write a class with `errors` errors, five per method, to a temporary directory */
+    private static Path generate(int errors) throws Exception {
+        var text = new StringBuilder("class Errors {\n");
+        for (var i = 0; i < errors / 5; i++) {
+            text.append(
+                    String.format(
+                            "    void m%d() { Missing%d a = undefined%d; int b = \"s\"; c%d(); Object o = x%d.y; }\n",
+                            i, i, i, i, i));
+        }
+        text.append("}\n");
+        var dir = Files.createTempDirectory("error-budget");
+        var file = dir.resolve("Errors.java");
+        Files.writeString(file, text);
+        return file;
+    }
+}
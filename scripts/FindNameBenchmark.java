@@ -0,0 +1,51 @@
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+import org.javacs.FindHelper;
+
+/**
+ * Measures how long it takes to locate the name of every declaration in a large file, the way reference results are
+ * turned into locations: once with a regex per lookup, and once with FindHelper, which lexes the file once and
+ * binary-searches its identifiers.
+ *
+ * <p>Usage: java -cp target/classes scripts/FindNameBenchmark.java [lookups]
+ */
+public class FindNameBenchmark {
+    public static void main(String[] args) {
+        var lookups = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        var text = new StringBuilder("class Large {\n");
+        var spans = new ArrayList<int[]>();
+        for (var i = 0; i < lookups; i++) {
+            var start = text.length();
+            text.append(String.format("    /** Calls method%d */\n", i));
+            text.append(String.format("    int method%d(int x) {\n", i));
+            text.append(String.format("        String s = \"method%d\";\n", i));
+            text.append(String.format("        return x + %d; // method%d\n", i, i));
+            text.append("    }\n");
+            spans.add(new int[] {start, text.length()});
+        }
+        text.append("}\n");
+        var contents = text.toString();
+        System.out.printf("%d lookups in %d chars%n", lookups, contents.length());
+        for (var run = 0; run < 5; run++) {
+            var started = System.nanoTime();
+            long sink = 0;
+            for (var i = 0; i < lookups; i++) {
+                var matcher = Pattern.compile("\\bmethod" + i + "\\b").matcher(contents);
+                matcher.region(spans.get(i)[0], spans.get(i)[1]);
+                if (matcher.find()) sink += matcher.start();
+            }
+            var regex = System.nanoTime();
+            // A new String each run, so FindHelper has to lex it again
+            var copy = new String(contents);
+            sink += FindHelper.findNameIn(copy, "method0", spans.get(0)[0], spans.get(0)[1]);
+            var lexed = System.nanoTime();
+            for (var i = 1; i < lookups; i++) {
+                sink += FindHelper.findNameIn(copy, "method" + i, spans.get(i)[0], spans.get(i)[1]);
+            }
+            var tokens = System.nanoTime();
+            System.out.printf(
+                    "regex %.2f ms, tokens %.2f ms, of which lexing %.2f ms (%d)%n",
+                    (regex - started) / 1e6, (tokens - regex) / 1e6, (lexed - regex) / 1e6, sink % 10);
+        }
+    }
+}
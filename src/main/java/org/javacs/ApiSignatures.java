@@ -0,0 +1,105 @@
+package org.javacs;
+
+import com.sun.source.tree.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.CRC32;
+import javax.lang.model.element.Modifier;
+
+/**
+ * ApiSignatures remembers a checksum of the part of each open file that other files can see: its package, imports,
+ * and the declarations of its non-private classes, methods and fields, without method bodies. If a saved file's
+ * checksum hasn't changed, no other file can have gained or lost an error because of the edit.
+ */
+class ApiSignatures {
+    private static class Signature {
+        final long checksum;
+        /** Qualified names of every class declared in the file */
+        final List<String> classes;
+
+        Signature(long checksum, List<String> classes) {
+            this.checksum = checksum;
+            this.classes = classes;
+        }
+    }
+
+    private final Map<Path, Signature> remembered = new HashMap<>();
+
+    /** Remember the current signature of `file` */
+    void remember(Path file) {
+        remembered.put(file, signature(file));
+    }
+
+    void forget(Path file) {
+        remembered.remove(file);
+    }
+
+    /**
+     * The classes whose signatures have changed since `file` was last remembered, or an empty list if nothing has
+     * changed. Remembers the new signature.
+     */
+    List<String> changedClasses(Path file) {
+        var before = remembered.get(file);
+        var after = signature(file);
+        remembered.put(file, after);
+        if (before != null && before.checksum == after.checksum) return List.of();
+        var classes = new LinkedHashSet<String>(after.classes);
+        if (before != null) classes.addAll(before.classes);
+        return List.copyOf(classes);
+    }
+
+    private static Signature signature(Path file) {
+        var root = Parser.parseFile(file).root;
+        var packageName = Objects.toString(root.getPackageName(), "");
+        var out = new StringBuilder();
+        out.append("package ").append(packageName).append(";\n");
+        for (var i : root.getImports()) {
+            out.append(i);
+        }
+        var classes = new ArrayList<String>();
+        for (var t : root.getTypeDecls()) {
+            if (t instanceof ClassTree) {
+                describe((ClassTree) t, packageName, out, classes);
+            }
+        }
+        var crc = new CRC32();
+        crc.update(out.toString().getBytes(StandardCharsets.UTF_8));
+        return new Signature(crc.getValue(), classes);
+    }
+
+    private static void describe(ClassTree c, String outer, StringBuilder out, List<String> classes) {
+        var className = outer.isEmpty() ? c.getSimpleName().toString() : outer + "." + c.getSimpleName();
+        classes.add(className);
+        if (isPrivate(c.getModifiers())) return;
+        out.append(c.getModifiers()).append(c.getKind()).append(' ').append(c.getSimpleName());
+        out.append(c.getTypeParameters()).append(" extends ").append(c.getExtendsClause());
+        out.append(" implements ").append(c.getImplementsClause()).append(" {\n");
+        for (var member : c.getMembers()) {
+            if (member instanceof ClassTree) {
+                describe((ClassTree) member, className, out, classes);
+            } else if (member instanceof MethodTree) {
+                var m = (MethodTree) member;
+                if (isPrivate(m.getModifiers())) continue;
+                out.append(m.getModifiers()).append(m.getTypeParameters()).append(m.getReturnType()).append(' ');
+                out.append(m.getName()).append(m.getParameters()).append(" throws ").append(m.getThrows());
+                out.append(" default ").append(m.getDefaultValue()).append(";\n");
+            } else if (member instanceof VariableTree) {
+                var v = (VariableTree) member;
+                // Record components are private fields, but they are visible through their accessors
+                if (isPrivate(v.getModifiers()) && c.getKind() != Tree.Kind.RECORD) continue;
+                out.append(v.getModifiers()).append(v.getType()).append(' ').append(v.getName());
+                // Constants are inlined into the files that use them
+                if (v.getModifiers().getFlags().contains(Modifier.FINAL)) {
+                    out.append(" = ").append(v.getInitializer());
+                }
+                out.append(";\n");
+            }
+        }
+        out.append("}\n");
+    }
+
+    private static boolean isPrivate(ModifiersTree modifiers) {
+        return modifiers.getFlags().contains(Modifier.PRIVATE);
+    }
+}
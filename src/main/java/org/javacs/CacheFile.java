@@ -0,0 +1,58 @@
+package org.javacs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * CacheFile is a JSON file in the user's cache directory that belongs to one workspace. It's named after a checksum of
+ * the workspace roots, so each workspace gets its own file, and it's replaced atomically when it's saved, so a crash
+ * never leaves half a file behind.
+ */
+class CacheFile {
+    final Path file;
+
+    CacheFile(String prefix, Set<Path> workspaceRoots) {
+        var crc = new CRC32();
+        for (var root : new TreeSet<>(workspaceRoots)) {
+            crc.update(root.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        this.file = DocStore.cacheDir().resolve(prefix + "-" + Long.toHexString(crc.getValue()) + ".json");
+    }
+
+    /** The saved contents, or null if nothing has been saved yet or the file can't be read */
+    <T> T load(Class<T> type) {
+        try {
+            var json = Files.readString(file);
+            return JsonHelper.GSON.fromJson(json, type);
+        } catch (NoSuchFileException __) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOG.warning("Couldn't load " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Replace the saved contents with `value`; returns false if it couldn't be written */
+    boolean save(Object value) {
+        try {
+            Files.createDirectories(file.getParent());
+            var temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, JsonHelper.GSON.toJson(value));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            LOG.warning("Couldn't save " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
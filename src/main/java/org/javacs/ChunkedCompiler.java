@@ -0,0 +1,246 @@
+package org.javacs;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * ChunkedCompiler compiles a large set of files, like the candidates for find-references or rename, as a series of
+ * smaller batches. Files in the same package stay in the same chunk, so package-private references still resolve.
+ * Chunks compile in parallel on a small pool of compilers, each with its own javac context and file manager, and the
+ * caller gets each chunk as soon as it's finished instead of waiting for one giant batch.
+ */
+class ChunkedCompiler {
+    static final int CHUNK_SIZE = 50;
+    private static final int PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    /** How long the workers' compilers stay in memory after they were last used */
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(2);
+
+    /** Reports the progress of a chunked compilation to the user */
+    interface Progress {
+        void start(String message);
+
+        void report(String message, int increment);
+
+        void end();
+    }
+
+    private static final Progress NO_PROGRESS =
+            new Progress() {
+                @Override
+                public void start(String message) {}
+
+                @Override
+                public void report(String message, int increment) {}
+
+                @Override
+                public void end() {}
+            };
+
+    private final JavaCompilerService parent;
+    private final List<Worker> workers = new ArrayList<>();
+    private ExecutorService threads;
+    private Instant lastUsed = Instant.EPOCH;
+    Progress progress = NO_PROGRESS;
+
+    ChunkedCompiler(JavaCompilerService parent) {
+        this.parent = parent;
+    }
+
+    private static class Worker {
+        final ReusableCompiler compiler = new ReusableCompiler();
+        final SourceFileManager fileManager = new SourceFileManager();
+        final List<Diagnostic<? extends JavaFileObject>> diags = new ArrayList<>();
+    }
+
+    private static class Compiled {
+        final Worker worker;
+        final CompileBatch batch;
+
+        Compiled(Worker worker, CompileBatch batch) {
+            this.worker = worker;
+            this.batch = batch;
+        }
+    }
+
+    void compile(Path[] files, Consumer<CompileTask> forEach) {
+        compile(files, Map.of(), forEach);
+    }
+
+    /** Compile `files` with `edits` replacing the contents of those files, wherever they're read from */
+    void compile(Path[] files, Map<Path, String> edits, Consumer<CompileTask> forEach) {
+        var chunks = chunks(files);
+        LOG.info(
+                String.format(
+                        "Compile %d files in %d chunks, %d at a time...", files.length, chunks.size(), PARALLELISM));
+        var started = Instant.now();
+        var done = new ExecutorCompletionService<Compiled>(threads());
+        for (var worker : workers()) {
+            worker.fileManager.setEdits(edits);
+        }
+        var next = 0;
+        var running = 0;
+        for (var worker : workers()) {
+            if (next == chunks.size()) break;
+            submit(done, worker, chunks.get(next++));
+            running++;
+        }
+        progress.start("Compile " + files.length + " files");
+        RuntimeException failed = null;
+        try {
+            for (var finished = 0; running > 0; finished++) {
+                Compiled compiled;
+                try {
+                    compiled = done.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    // The worker already returned its compiler to the pool, but the other chunks are still running
+                    running--;
+                    if (failed == null) failed = new RuntimeException(e.getCause());
+                    continue;
+                }
+                running--;
+                try {
+                    if (failed == null) {
+                        var batch = compiled.batch;
+                        forEach.accept(new CompileTask(batch.task, batch.roots, compiled.worker.diags, batch::close));
+                    }
+                } catch (RuntimeException e) {
+                    failed = e;
+                } finally {
+                    compiled.batch.close();
+                    compiled.batch.borrow.close();
+                }
+                // The change in the cumulative percentage, so the increments add up to 100 for any number of chunks
+                var increment = (finished + 1) * 100 / chunks.size() - finished * 100 / chunks.size();
+                progress.report(String.format("Compiled %d of %d chunks", finished + 1, chunks.size()), increment);
+                if (failed == null && next < chunks.size()) {
+                    submit(done, compiled.worker, chunks.get(next++));
+                    running++;
+                }
+            }
+        } finally {
+            progress.end();
+            for (var worker : workers) {
+                worker.fileManager.setEdits(Map.of());
+            }
+            lastUsed = Instant.now();
+        }
+        if (failed != null) throw failed;
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(String.format("...compiled %d chunks in %d ms", chunks.size(), elapsed));
+    }
+
+    /**
+     * Compile `files` as a single chunk on the calling thread, using a worker's compiler instead of the main one, so
+     * the batch the main compiler has cached for the user's current file isn't thrown away. If `abort` becomes true
+     * before the compilation finishes, throws CompileAborted.
+     */
+    void compileAside(Path[] files, BooleanSupplier abort, Consumer<CompileTask> forEach) {
+        var worker = workers().get(0);
+        var sources = new ArrayList<JavaFileObject>();
+        for (var f : files) {
+            sources.add(new SourceFileObject(f));
+        }
+        var batch = parent.doCompile(worker.compiler, worker.fileManager, worker.diags, sources, abort);
+        try {
+            forEach.accept(new CompileTask(batch.task, batch.roots, worker.diags, batch::close));
+        } finally {
+            batch.close();
+            batch.borrow.close();
+            lastUsed = Instant.now();
+        }
+    }
+
+    /**
+     * Release the workers' compilers and threads if they haven't been used for IDLE_TIMEOUT; they're created again by
+     * the next chunked compile. Returns true if they're still in memory, so this should be called again later.
+     */
+    boolean releaseIfIdle() {
+        if (workers.isEmpty()) return false;
+        if (Duration.between(lastUsed, Instant.now()).compareTo(IDLE_TIMEOUT) < 0) return true;
+        release();
+        return false;
+    }
+
+    /** Release the workers' compilers and threads now */
+    void release() {
+        if (workers.isEmpty()) return;
+        LOG.info(String.format("Release %d idle compilers...", workers.size()));
+        workers.clear();
+        if (threads != null) {
+            threads.shutdown();
+            threads = null;
+        }
+    }
+
+    private void submit(ExecutorCompletionService<Compiled> done, Worker worker, List<Path> chunk) {
+        done.submit(
+                () -> {
+                    var sources = new ArrayList<JavaFileObject>();
+                    for (var f : chunk) {
+                        sources.add(worker.fileManager.asJavaFileObject(f));
+                    }
+                    var batch = parent.doCompile(worker.compiler, worker.fileManager, worker.diags, sources, null);
+                    return new Compiled(worker, batch);
+                });
+    }
+
+    /** Split `files` into chunks of about CHUNK_SIZE files, without splitting packages */
+    private static List<List<Path>> chunks(Path[] files) {
+        var byPackage = new TreeMap<String, List<Path>>();
+        for (var f : files) {
+            var packageName = FileStore.packageName(f);
+            if (packageName == null) packageName = "";
+            byPackage.computeIfAbsent(packageName, __ -> new ArrayList<>()).add(f);
+        }
+        var chunks = new ArrayList<List<Path>>();
+        var chunk = new ArrayList<Path>();
+        for (var packageFiles : byPackage.values()) {
+            if (!chunk.isEmpty() && chunk.size() + packageFiles.size() > CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+            chunk.addAll(packageFiles);
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private List<Worker> workers() {
+        while (workers.size() < PARALLELISM) {
+            workers.add(new Worker());
+        }
+        return workers;
+    }
+
+    private ExecutorService threads() {
+        if (threads == null) {
+            threads =
+                    Executors.newFixedThreadPool(
+                            PARALLELISM,
+                            task -> {
+                                var thread = new Thread(task, "chunked-compiler");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+        }
+        return threads;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -0,0 +1,9 @@
+package org.javacs;
+
+/**
+ * Thrown when a speculative compilation gives up because the user edited a file before it finished, or when a chunked
+ * compilation gives up because the client cancelled the request.
+ */
+public class CompileAborted extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+}
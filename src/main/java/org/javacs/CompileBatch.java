@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 import javax.lang.model.util.*;
 import javax.tools.*;
@@ -16,6 +17,7 @@ class CompileBatch implements AutoCloseable {
 
     final JavaCompilerService parent;
     final ReusableCompiler.Borrow borrow;
+    final List<Diagnostic<? extends JavaFileObject>> diags;
     /** Indicates the task that requested the compilation is finished with it. */
     boolean closed;
 
@@ -24,15 +26,42 @@ class CompileBatch implements AutoCloseable {
     final Elements elements;
     final Types types;
     final List<CompilationUnitTree> roots;
+    /** Indicates this batch was compiled ahead of time, before any request asked for it. */
+    final boolean speculative;
 
     CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files) {
+        this(parent, files, null);
+    }
+
+    /** Compile `files`, but if `abort` becomes true before javac starts analyzing the next class, give up. */
+    CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files, BooleanSupplier abort) {
+        this(parent, parent.compiler, parent.fileManager, parent.diags, files, abort);
+    }
+
+    /** Compile `files` using a compiler other than `parent.compiler`, so several batches can compile in parallel. */
+    CompileBatch(
+            JavaCompilerService parent,
+            ReusableCompiler compiler,
+            SourceFileManager fileManager,
+            List<Diagnostic<? extends JavaFileObject>> diags,
+            Collection<? extends JavaFileObject> files,
+            BooleanSupplier abort) {
         this.parent = parent;
-        this.borrow = batchTask(parent, files);
+        this.speculative = abort != null;
+        this.diags = diags;
+        diags.clear();
+        // The budget scales with the batch, so one broken file can't use up the budget of the rest
+        var errorBudget = (int) Math.min(Integer.MAX_VALUE, (long) parent.errorBudget * files.size());
+        var options = options(parent.classPath, parent.addExports, errorBudget);
+        this.borrow = compiler.getTask(fileManager, diags::add, options, List.of(), files);
         this.task = borrow.task;
         this.trees = Trees.instance(borrow.task);
         this.elements = borrow.task.getElements();
         this.types = borrow.task.getTypes();
         this.roots = new ArrayList<>();
+        if (abort != null) {
+            borrow.task.addTaskListener(new AbortListener(abort));
+        }
         // Compile all roots
         try {
             for (var t : borrow.task.parse()) {
@@ -42,10 +71,39 @@ class CompileBatch implements AutoCloseable {
             // You can get at `Element` values using `Trees`
             borrow.task.analyze();
         } catch (IOException e) {
+            borrow.close();
             throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            // Return the compiler to the pool, otherwise every future compilation will fail
+            borrow.close();
+            if (isAborted(e)) throw new CompileAborted();
+            throw e;
         }
     }
 
+    private static class AbortListener implements TaskListener {
+        final BooleanSupplier abort;
+
+        AbortListener(BooleanSupplier abort) {
+            this.abort = abort;
+        }
+
+        @Override
+        public void started(TaskEvent e) {
+            if (e.getKind() == TaskEvent.Kind.ANALYZE && abort.getAsBoolean()) {
+                throw new CompileAborted();
+            }
+        }
+    }
+
+    /** javac wraps exceptions thrown by task listeners, so look for CompileAborted in the causes of `e` */
+    private static boolean isAborted(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CompileAborted) return true;
+        }
+        return false;
+    }
+
     /**
      * If the compilation failed because javac didn't find some package-private files in source files with different
      * names, list those source files.
@@ -53,7 +111,7 @@ class CompileBatch implements AutoCloseable {
     Set<Path> needsAdditionalSources() {
         // Check for "class not found errors" that refer to package private classes
         var addFiles = new HashSet<Path>();
-        for (var err : parent.diags) {
+        for (var err : diags) {
             if (!err.getCode().equals("compiler.err.cant.resolve.location")) continue;
             if (!isValidFileRange(err)) continue;
             var className = errorText(err);
@@ -100,19 +158,12 @@ class CompileBatch implements AutoCloseable {
         closed = true;
     }
 
-    private static ReusableCompiler.Borrow batchTask(
-            JavaCompilerService parent, Collection<? extends JavaFileObject> sources) {
-        parent.diags.clear();
-        var options = options(parent.classPath, parent.addExports);
-        return parent.compiler.getTask(parent.fileManager, parent.diags::add, options, List.of(), sources);
-    }
-
     /** Combine source path or class path entries using the system separator, for example ':' in unix */
     private static String joinPath(Collection<Path> classOrSourcePath) {
         return classOrSourcePath.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
     }
 
-    private static List<String> options(Set<Path> classPath, Set<String> addExports) {
+    private static List<String> options(Set<Path> classPath, Set<String> addExports, int errorBudget) {
         var list = new ArrayList<String>();
 
         Collections.addAll(list, "-classpath", joinPath(classPath));
@@ -133,6 +184,10 @@ class CompileBatch implements AutoCloseable {
                 "-Xlint:unchecked",
                 "-Xlint:varargs",
                 "-Xlint:static");
+        // Past the budget, javac stops creating diagnostics, so a broken file doesn't produce thousands of them.
+        // Attribution still runs to the end, because navigation and colors need the attributed trees.
+        var budget = Integer.toString(errorBudget);
+        Collections.addAll(list, "-Xmaxerrs", budget, "-Xmaxwarns", budget);
         for (var export : addExports) {
             list.add("--add-exports");
             list.add(export + "=ALL-UNNAMED");
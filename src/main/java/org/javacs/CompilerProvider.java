@@ -4,8 +4,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.tools.JavaFileObject;
 
 public interface CompilerProvider {
@@ -19,6 +21,12 @@ public interface CompilerProvider {
 
     Optional<JavaFileObject> findAnywhere(String className);
 
+    DocStore docStore();
+
+    ReferenceIndex referenceIndex();
+
+    TypeHierarchy typeHierarchy();
+
     Path findTypeDeclaration(String className);
 
     Path[] findTypeReferences(String className);
@@ -33,5 +41,18 @@ public interface CompilerProvider {
 
     CompileTask compile(Collection<? extends JavaFileObject> sources);
 
+    /**
+     * Compile `files` in chunks of related files, several chunks at a time, and call `forEach` with each chunk as soon
+     * as it's finished. `forEach` runs on the calling thread, and each chunk is only valid until `forEach` returns.
+     */
+    void compileInChunks(Path[] files, Consumer<CompileTask> forEach);
+
+    /**
+     * Like compileInChunks, but with `edits` replacing the contents of those files, both in the chunks that compile
+     * them and when another chunk looks them up on the source path. Always uses the chunked compiler's workers, so the
+     * main compiler's cached batch never sees the edits.
+     */
+    void compileInChunks(Path[] files, Map<Path, String> edits, Consumer<CompileTask> forEach);
+
     Path NOT_FOUND = Paths.get("");
 }
@@ -0,0 +1,174 @@
+package org.javacs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import javax.tools.JavaFileObject;
+
+/**
+ * DocStore maps the signature of a class or member declared in src.zip or a source jar on the doc path to its rendered
+ * markdown docs. Entries are appended to a file in the user's cache directory, and the file is memory-mapped the next
+ * time the language server starts. The name of the file includes a checksum of the path, size and modified time of
+ * every jar, so when a jar changes, the whole store is replaced. The cache directory is shared by every workspace, so
+ * other stores are only deleted once nobody has written to them for a while, and writes take a file lock, in case two
+ * language servers with the same jars append to the same store.
+ */
+public class DocStore {
+    private static final Duration STALE_AFTER = Duration.ofDays(30);
+    private final List<Path> jars;
+    private boolean opened;
+    private FileChannel append;
+    private MappedByteBuffer mapped;
+    /** Position and length of each value in `mapped` */
+    private final Map<String, long[]> index = new HashMap<>();
+    /** Values that were added since `mapped` was loaded */
+    private final Map<String, String> added = new HashMap<>();
+
+    DocStore(List<Path> jars) {
+        this.jars = jars;
+    }
+
+    /** Only docs from jars are stored; sources in the workspace can change at any time. */
+    public static boolean canStore(JavaFileObject file) {
+        return !file.toUri().getScheme().equals("file");
+    }
+
+    public static String signature(String className, String memberName, String[] erasedParameterTypes) {
+        if (memberName == null) return className;
+        if (erasedParameterTypes == null) return className + "#" + memberName;
+        return className + "#" + memberName + "(" + String.join(",", erasedParameterTypes) + ")";
+    }
+
+    public Optional<String> get(String signature) {
+        open();
+        if (added.containsKey(signature)) {
+            return Optional.of(added.get(signature));
+        }
+        var at = index.get(signature);
+        if (at == null) return Optional.empty();
+        var bytes = new byte[(int) at[1]];
+        mapped.get((int) at[0], bytes);
+        return Optional.of(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    public void put(String signature, String markdown) {
+        open();
+        added.put(signature, markdown);
+        if (append == null) return;
+        var key = signature.getBytes(StandardCharsets.UTF_8);
+        var value = markdown.getBytes(StandardCharsets.UTF_8);
+        var record = ByteBuffer.allocate(8 + key.length + value.length);
+        record.putInt(key.length).put(key).putInt(value.length).put(value).flip();
+        try {
+            var lock = append.lock();
+            try {
+                // Another language server may have appended since our last write
+                append.position(append.size());
+                while (record.hasRemaining()) append.write(record);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            LOG.warning("Couldn't write to doc store: " + e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    private void open() {
+        if (opened) return;
+        opened = true;
+        var started = Instant.now();
+        try {
+            var dir = cacheDir();
+            Files.createDirectories(dir);
+            var file = dir.resolve("docs-" + checksum() + ".bin");
+            deleteStale(dir, file);
+            append =
+                    FileChannel.open(
+                            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            var lock = append.lock();
+            try {
+                var valid = load(append);
+                // Discard a partial record left behind by a crash
+                append.truncate(valid);
+                append.position(valid);
+            } finally {
+                lock.release();
+            }
+            // Mark the store as in use, even if nothing new is written to it
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            LOG.info(
+                    String.format(
+                            "...loaded %d docs from %s in %d ms",
+                            index.size(), file, Duration.between(started, Instant.now()).toMillis()));
+        } catch (IOException e) {
+            LOG.warning("Doc store is unavailable, docs will only be cached in memory: " + e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    /** Map the existing records in `channel` and index their keys; returns the end of the last complete record. */
+    private long load(FileChannel channel) throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        while (mapped.remaining() >= 4) {
+            var start = mapped.position();
+            var keyLength = mapped.getInt();
+            if (keyLength < 0 || mapped.remaining() < keyLength + 4) return start;
+            var key = new byte[keyLength];
+            mapped.get(key);
+            var valueLength = mapped.getInt();
+            if (valueLength < 0 || mapped.remaining() < valueLength) return start;
+            long[] at = {mapped.position(), valueLength};
+            index.put(new String(key, StandardCharsets.UTF_8), at);
+            mapped.position(mapped.position() + valueLength);
+        }
+        return mapped.position();
+    }
+
+    /** Checksum of the path, size and modified time of each jar, which is cheap compared to reading the jars */
+    private String checksum() throws IOException {
+        var crc = new CRC32();
+        for (var jar : jars) {
+            var key = jar + ":" + Files.size(jar) + ":" + Files.getLastModifiedTime(jar).toMillis();
+            crc.update(key.getBytes(StandardCharsets.UTF_8));
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    /** Delete the stores that no language server has opened or written to for STALE_AFTER */
+    private void deleteStale(Path dir, Path current) throws IOException {
+        var cutoff = Instant.now().minus(STALE_AFTER);
+        try (var list = Files.newDirectoryStream(dir, "docs-*.bin")) {
+            for (var f : list) {
+                if (f.equals(current)) continue;
+                if (Files.getLastModifiedTime(f).toInstant().isAfter(cutoff)) continue;
+                LOG.info("...delete stale doc store " + f);
+                Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    static Path cacheDir() {
+        return Paths.get(System.getProperty("user.home")).resolve(".cache").resolve("java-language-server");
+    }
+
+    private void closeQuietly() {
+        if (append == null) return;
+        try {
+            append.close();
+        } catch (IOException __) {
+        }
+        append = null;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -14,6 +14,9 @@ public class Docs {
     /** File manager with source-path + platform sources, which we will use to look up individual source files */
     final SourceFileManager fileManager = new SourceFileManager();
 
+    /** Rendered docs of classes and members declared in the doc path and src.zip */
+    final DocStore store;
+
     Docs(Set<Path> docPath) {
         var srcZipPath = srcZip();
         // Path to source .jars + src.zip
@@ -29,6 +32,19 @@ public class Docs {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        this.store = new DocStore(storedJars(docPath));
+    }
+
+    private static List<Path> storedJars(Set<Path> docPath) {
+        var jars = new ArrayList<Path>();
+        for (var p : docPath) {
+            if (Files.isRegularFile(p)) jars.add(p);
+        }
+        if (cacheSrcZip != NOT_FOUND) {
+            jars.add(cacheSrcZip);
+        }
+        jars.sort(Comparator.naturalOrder());
+        return jars;
     }
 
     static final Path NOT_FOUND = Paths.get("");
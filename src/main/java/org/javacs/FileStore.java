@@ -85,6 +85,10 @@ public class FileStore {
         }
     }
 
+    static Set<Path> workspaceRoots() {
+        return Collections.unmodifiableSet(workspaceRoots);
+    }
+
     static Collection<Path> all() {
         return javaSources.keySet();
     }
@@ -135,7 +139,7 @@ public class FileStore {
         return isJavaFile(file) && javaSources.containsKey(file);
     }
 
-    static Instant modified(Path file) {
+    public static Instant modified(Path file) {
         // If file is open, use last in-memory modification time
         if (activeDocuments.containsKey(file)) {
             return activeDocuments.get(file).modified;
@@ -249,6 +253,13 @@ public class FileStore {
         activeDocuments.remove(file);
     }
 
+    /** Version of an open document, or -1 if the file is not open */
+    public static int version(Path file) {
+        var document = activeDocuments.get(file);
+        if (document == null) return -1;
+        return document.version;
+    }
+
     static Set<Path> activeDocuments() {
         return activeDocuments.keySet();
     }
@@ -309,7 +320,7 @@ public class FileStore {
     }
 
     /** Convert from line/column (1-based) to offset (0-based) */
-    static int offset(String contents, int line, int column) {
+    public static int offset(String contents, int line, int column) {
         line--;
         column--;
         int cursor = 0;
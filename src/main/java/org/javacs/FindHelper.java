@@ -13,7 +13,10 @@ import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import java.io.IOException;
-import java.util.regex.Pattern;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
@@ -93,7 +96,7 @@ public class FindHelper {
         return true;
     }
 
-    private static boolean isSameMethodType(MethodTree candidate, String[] erasedParameterTypes) {
+    public static boolean isSameMethodType(MethodTree candidate, String[] erasedParameterTypes) {
         if (candidate.getParameters().size() != erasedParameterTypes.length) {
             return false;
         }
@@ -129,6 +132,19 @@ public class FindHelper {
         return true;
     }
 
+    /** The location of the name of `declaration`, a class, method or variable tree in `task.root` */
+    public static Location location(ParseTask task, Tree declaration) {
+        var path = Trees.instance(task.task).getPath(task.root, declaration);
+        CharSequence contents;
+        try {
+            contents = task.root.getSourceFile().getCharContent(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        var range = Parser.range(task.task, contents, path);
+        return new Location(task.root.getSourceFile().toUri(), range);
+    }
+
     public static Location location(CompileTask task, TreePath path) {
         return location(task, path, "");
     }
@@ -154,17 +170,194 @@ public class FindHelper {
     }
 
     public static int findNameIn(CompilationUnitTree root, CharSequence name, int start, int end) {
+        return identifiers(root).find(name, start, end);
+    }
+
+    /**
+     * Find the first identifier token `name` in `contents[start, end)`, or -1. Comments and string and character
+     * literals are skipped, so unlike a \b regex, `name` can't match inside them.
+     */
+    public static int findNameIn(CharSequence contents, CharSequence name, int start, int end) {
+        return identifiers(contents).find(name, start, end);
+    }
+
+    /**
+     * Find the comments in `contents`, as [start, end) offsets, without parsing. Line comments on consecutive lines are
+     * joined into one comment, unless code comes before them on the line.
+     */
+    public static List<int[]> findComments(CharSequence contents) {
+        var found = new ArrayList<int[]>();
+        var end = contents.length();
+        var i = 0;
+        // True if only whitespace has been seen since the start of the line
+        var lineStart = true;
+        // True if the last comment was a line comment on a line of its own, and only whitespace has followed it
+        var joinable = false;
+        var newlines = 0;
+        while (i < end) {
+            var c = contents.charAt(i);
+            var next = i + 1 < end ? contents.charAt(i + 1) : 0;
+            if (c == '/' && next == '/') {
+                var commentEnd = skipLineComment(contents, i, end);
+                if (joinable && lineStart && newlines == 1) {
+                    found.get(found.size() - 1)[1] = commentEnd;
+                } else {
+                    found.add(new int[] {i, commentEnd});
+                }
+                joinable = lineStart;
+                newlines = 0;
+                i = commentEnd;
+            } else if (c == '/' && next == '*') {
+                var commentEnd = skipBlockComment(contents, i, end);
+                found.add(new int[] {i, commentEnd});
+                joinable = false;
+                lineStart = false;
+                i = commentEnd;
+            } else if (c == '"' || c == '\'') {
+                i = skipLiteral(contents, i, end);
+                joinable = false;
+                lineStart = false;
+            } else if (c == '\n') {
+                lineStart = true;
+                newlines++;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                joinable = false;
+                lineStart = false;
+                i++;
+            }
+        }
+        return found;
+    }
+
+    private static int skipLineComment(CharSequence contents, int i, int end) {
+        while (i < end && contents.charAt(i) != '\n') i++;
+        return i;
+    }
+
+    private static int skipBlockComment(CharSequence contents, int i, int end) {
+        for (i += 2; i + 1 < end; i++) {
+            if (contents.charAt(i) == '*' && contents.charAt(i + 1) == '/') return i + 2;
+        }
+        return end;
+    }
+
+    /** Skip a string, text block or character literal starting with the quote at `i` */
+    private static int skipLiteral(CharSequence contents, int i, int end) {
+        var quote = contents.charAt(i);
+        var textBlock = quote == '"' && regionMatches(contents, i, "\"\"\"");
+        i += textBlock ? 3 : 1;
+        while (i < end) {
+            var c = contents.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (textBlock && regionMatches(contents, i, "\"\"\"")) {
+                return i + 3;
+            } else if (!textBlock && (c == quote || c == '\n')) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return end;
+    }
+
+    private static boolean regionMatches(CharSequence contents, int offset, CharSequence name) {
+        if (offset + name.length() > contents.length()) return false;
+        for (var j = 0; j < name.length(); j++) {
+            if (contents.charAt(offset + j) != name.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The identifier tokens of one file, found by a single lexer pass, so each lookup is a binary search over the
+     * tokens instead of a scan of the text.
+     */
+    private static class Identifiers {
+        /** The compilation unit or contents these are the identifiers of; weak, so a closed compilation isn't kept */
+        final WeakReference<Object> key;
+        final CharSequence contents;
+        /** The [start, end) offsets of each identifier, in order */
+        final int[] starts, ends;
+
+        Identifiers(Object key, CharSequence contents) {
+            this.key = new WeakReference<>(key);
+            this.contents = contents;
+            var starts = new int[256];
+            var ends = new int[256];
+            var count = 0;
+            var end = contents.length();
+            var i = 0;
+            while (i < end) {
+                var c = contents.charAt(i);
+                var next = i + 1 < end ? contents.charAt(i + 1) : 0;
+                if (c == '/' && next == '/') {
+                    i = skipLineComment(contents, i, end);
+                } else if (c == '/' && next == '*') {
+                    i = skipBlockComment(contents, i, end);
+                } else if (c == '"' || c == '\'') {
+                    i = skipLiteral(contents, i, end);
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    var tokenStart = i;
+                    while (i < end && Character.isJavaIdentifierPart(contents.charAt(i))) i++;
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    starts[count] = tokenStart;
+                    ends[count] = i;
+                    count++;
+                } else if (Character.isDigit(c)) {
+                    // Skip number literals like 1L or 0xFF, so their suffixes don't look like identifiers
+                    while (i < end && Character.isJavaIdentifierPart(contents.charAt(i))) i++;
+                } else {
+                    i++;
+                }
+            }
+            this.starts = Arrays.copyOf(starts, count);
+            this.ends = Arrays.copyOf(ends, count);
+        }
+
+        /** The start of the first identifier `name` that lies within [start, end), or -1 */
+        int find(CharSequence name, int start, int end) {
+            var i = Arrays.binarySearch(starts, start);
+            if (i < 0) i = -i - 1;
+            for (; i < starts.length && starts[i] < end; i++) {
+                if (ends[i] > end || ends[i] - starts[i] != name.length()) continue;
+                if (regionMatches(contents, starts[i], name)) return starts[i];
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The identifiers of the file that this thread looked up last. Each thread has its own, because names are looked up
+     * on the chunked compiler's threads and the main thread at the same time.
+     */
+    private static final ThreadLocal<Identifiers> lastIdentifiers = new ThreadLocal<>();
+
+    private static Identifiers identifiers(CompilationUnitTree root) {
+        var last = lastIdentifiers.get();
+        if (last != null && last.key.get() == root) return last;
         CharSequence contents;
         try {
             contents = root.getSourceFile().getCharContent(true);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        var matcher = Pattern.compile("\\b" + name + "\\b").matcher(contents);
-        matcher.region(start, end);
-        if (matcher.find()) {
-            return matcher.start();
-        }
-        return -1;
+        var found = new Identifiers(root, contents);
+        lastIdentifiers.set(found);
+        return found;
+    }
+
+    private static Identifiers identifiers(CharSequence contents) {
+        var last = lastIdentifiers.get();
+        if (last != null && last.key.get() == contents) return last;
+        var found = new Identifiers(contents, contents);
+        lastIdentifiers.set(found);
+        return found;
     }
 }
@@ -3,6 +3,8 @@ package org.javacs;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -14,7 +16,13 @@ class JavaCompilerService implements CompilerProvider {
     final Set<String> addExports;
     final ReusableCompiler compiler = new ReusableCompiler();
     final Docs docs;
+    final ChunkedCompiler chunks = new ChunkedCompiler(this);
+    final PackageGraph packageGraph = new PackageGraph(this);
+    final TypeHierarchy typeHierarchy = new TypeHierarchy(this);
+    final ReferenceIndex references;
     final Set<String> jdkClasses = ScanClassPath.jdkTopLevelClasses(), classPathClasses;
+    /** Most errors, and most warnings, that javac reports per file in a compilation; javac's own default is 100 */
+    int errorBudget = 100;
     // Diagnostics from the last compilation task
     final List<Diagnostic<? extends JavaFileObject>> diags = new ArrayList<>();
     // Use the same file manager for multiple tasks, so we don't repeatedly re-compile the same files
@@ -35,6 +43,7 @@ class JavaCompilerService implements CompilerProvider {
         this.docPath = Collections.unmodifiableSet(docPath);
         this.addExports = Collections.unmodifiableSet(addExports);
         this.docs = new Docs(docPath);
+        this.references = new ReferenceIndex(FileStore.workspaceRoots());
         this.classPathClasses = ScanClassPath.classPathTopLevelClasses(classPath);
         this.fileManager = new SourceFileManager();
     }
@@ -57,7 +66,7 @@ class JavaCompilerService implements CompilerProvider {
         return false;
     }
 
-    private void loadCompile(Collection<? extends JavaFileObject> sources) {
+    private void loadCompile(Collection<? extends JavaFileObject> sources, BooleanSupplier abort) {
         if (cachedCompile != null) {
             if (!cachedCompile.closed) {
                 throw new RuntimeException("Compiler is still in-use!");
@@ -65,16 +74,26 @@ class JavaCompilerService implements CompilerProvider {
             cachedCompile.borrow.close();
         }
         cachedCompile = null;
-        cachedCompile = doCompile(sources);
+        // If doCompile fails, make sure the next compile doesn't think the missing batch is up-to-date
         cachedModified.clear();
+        cachedCompile = doCompile(sources, abort);
         for (var f : sources) {
             cachedModified.put(f, f.getLastModified());
         }
     }
 
-    private CompileBatch doCompile(Collection<? extends JavaFileObject> sources) {
+    private CompileBatch doCompile(Collection<? extends JavaFileObject> sources, BooleanSupplier abort) {
+        return doCompile(compiler, fileManager, diags, sources, abort);
+    }
+
+    CompileBatch doCompile(
+            ReusableCompiler compiler,
+            SourceFileManager fileManager,
+            List<Diagnostic<? extends JavaFileObject>> diags,
+            Collection<? extends JavaFileObject> sources,
+            BooleanSupplier abort) {
         if (sources.isEmpty()) throw new RuntimeException("empty sources");
-        var firstAttempt = new CompileBatch(this, sources);
+        var firstAttempt = new CompileBatch(this, compiler, fileManager, diags, sources, abort);
         Set<Path> addFiles;
         try {
             addFiles = firstAttempt.needsAdditionalSources();
@@ -91,23 +110,47 @@ class JavaCompilerService implements CompilerProvider {
         var moreSources = new ArrayList<JavaFileObject>();
         moreSources.addAll(sources);
         for (var add : addFiles) {
-            moreSources.add(new SourceFileObject(add));
+            moreSources.add(fileManager.asJavaFileObject(add));
         }
-        return new CompileBatch(this, moreSources);
+        return new CompileBatch(this, compiler, fileManager, diags, moreSources, abort);
     }
 
+    /** Number of compile requests, and how many of them were answered by a batch that was compiled speculatively */
+    private int compileRequests, speculativeHits;
+
     private CompileBatch compileBatch(Collection<? extends JavaFileObject> sources) {
+        compileRequests++;
         if (needsCompile(sources)) {
-            loadCompile(sources);
+            loadCompile(sources, null);
+        } else if (cachedCompile.speculative) {
+            speculativeHits++;
+            LOG.info("...using speculative compile");
         } else {
             LOG.info("...using cached compile");
         }
+        LOG.fine(
+                String.format("...%d of %d compiles used a speculative compile", speculativeHits, compileRequests));
         return cachedCompile;
     }
 
+    /**
+     * Compile `files` before any request needs them, so the next request for the same files can reuse the batch. If
+     * `abort` becomes true before the compilation finishes, throws CompileAborted.
+     */
+    CompileTask compileSpeculatively(BooleanSupplier abort, Path... files) {
+        var sources = new ArrayList<JavaFileObject>();
+        for (var f : files) {
+            sources.add(new SourceFileObject(f));
+        }
+        if (needsCompile(sources)) {
+            loadCompile(sources, abort);
+        }
+        return new CompileTask(cachedCompile.task, cachedCompile.roots, diags, cachedCompile::close);
+    }
+
     private static final Pattern PACKAGE_EXTRACTOR = Pattern.compile("^([a-z][_a-zA-Z0-9]*\\.)*[a-z][_a-zA-Z0-9]*");
 
-    private String packageName(String className) {
+    static String packageName(String className) {
         var m = PACKAGE_EXTRACTOR.matcher(className);
         if (m.find()) {
             return m.group();
@@ -127,7 +170,7 @@ class JavaCompilerService implements CompilerProvider {
 
     private static final Cache<String, Boolean> cacheContainsWord = new Cache<>();
 
-    private boolean containsWord(Path file, String word) {
+    boolean containsWord(Path file, String word) {
         if (cacheContainsWord.needs(file, word)) {
             cacheContainsWord.load(file, word, StringSearch.containsWord(file, word));
         }
@@ -148,17 +191,29 @@ class JavaCompilerService implements CompilerProvider {
 
     private Cache<Void, List<String>> cacheFileImports = new Cache<>();
 
-    private List<String> readImports(Path file) {
+    private Cache<Void, List<String>> cacheFileStaticImports = new Cache<>();
+
+    List<String> readImports(Path file) {
         if (cacheFileImports.needs(file, null)) {
             loadImports(file);
         }
         return cacheFileImports.get(file, null);
     }
 
+    /** The classes whose members are imported by `import static` */
+    List<String> readStaticImports(Path file) {
+        if (cacheFileStaticImports.needs(file, null)) {
+            loadImports(file);
+        }
+        return cacheFileStaticImports.get(file, null);
+    }
+
     private void loadImports(Path file) {
         var list = new ArrayList<String>();
+        var staticList = new ArrayList<String>();
         var importClass = Pattern.compile("^import +([\\w\\.]+\\.\\w+);");
         var importStar = Pattern.compile("^import +([\\w\\.]+\\.\\*);");
+        var importStatic = Pattern.compile("^import +static +([\\w\\.]+)\\.(\\w+|\\*);");
         try (var lines = FileStore.lines(file)) {
             for (var line = lines.readLine(); line != null; line = lines.readLine()) {
                 // If we reach a class declaration, stop looking for imports
@@ -174,11 +229,17 @@ class JavaCompilerService implements CompilerProvider {
                 if (matchesStar.matches()) {
                     list.add(matchesStar.group(1));
                 }
+                // import static foo.bar.Doh.method;
+                var matchesStatic = importStatic.matcher(line);
+                if (matchesStatic.matches()) {
+                    staticList.add(matchesStatic.group(1));
+                }
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
         cacheFileImports.load(file, null, list);
+        cacheFileStaticImports.load(file, null, staticList);
     }
 
     @Override
@@ -247,6 +308,21 @@ class JavaCompilerService implements CompilerProvider {
         return Optional.empty();
     }
 
+    @Override
+    public DocStore docStore() {
+        return docs.store;
+    }
+
+    @Override
+    public ReferenceIndex referenceIndex() {
+        return references;
+    }
+
+    @Override
+    public TypeHierarchy typeHierarchy() {
+        return typeHierarchy;
+    }
+
     private Optional<JavaFileObject> findPublicTypeDeclarationInDocPath(String className) {
         try {
             var found =
@@ -312,9 +388,13 @@ class JavaCompilerService implements CompilerProvider {
     public Path[] findTypeReferences(String className) {
         var packageName = packageName(className);
         var simpleName = simpleName(className);
+        var importers = packageGraph.importersOf(packageName);
+        var visible = packageGraph.prune(FileStore.all(), importers, packageName, className);
         var candidates = new ArrayList<Path>();
-        for (var f : FileStore.all()) {
-            if (containsWord(f, packageName) && containsImport(f, className) && containsWord(f, simpleName)) {
+        for (var f : visible) {
+            // A file can also name the class by its fully qualified name, without importing it
+            var named = containsImport(f, className) || containsWord(f, className);
+            if (containsWord(f, packageName) && named && containsWord(f, simpleName)) {
                 candidates.add(f);
             }
         }
@@ -323,8 +403,12 @@ class JavaCompilerService implements CompilerProvider {
 
     @Override
     public Path[] findMemberReferences(String className, String memberName) {
+        var packageName = packageName(className);
+        var query = className + "#" + memberName;
+        var dependents = packageGraph.dependentsOf(packageName);
+        var visible = packageGraph.prune(FileStore.all(), dependents, packageName, query);
         var candidates = new ArrayList<Path>();
-        for (var f : FileStore.all()) {
+        for (var f : visible) {
             if (containsWord(f, memberName)) {
                 candidates.add(f);
             }
@@ -359,5 +443,21 @@ class JavaCompilerService implements CompilerProvider {
         return new CompileTask(compile.task, compile.roots, diags, compile::close);
     }
 
+    @Override
+    public void compileInChunks(Path[] files, Consumer<CompileTask> forEach) {
+        if (files.length <= ChunkedCompiler.CHUNK_SIZE) {
+            try (var task = compile(files)) {
+                forEach.accept(task);
+            }
+            return;
+        }
+        chunks.compile(files, Map.of(), forEach);
+    }
+
+    @Override
+    public void compileInChunks(Path[] files, Map<Path, String> edits, Consumer<CompileTask> forEach) {
+        chunks.compile(files, edits, forEach);
+    }
+
     private static final Logger LOG = Logger.getLogger("main");
 }
@@ -20,7 +20,11 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 import javax.lang.model.element.*;
 import org.javacs.action.CodeActionProvider;
 import org.javacs.completion.CompletionProvider;
@@ -33,7 +37,10 @@ import org.javacs.log.LogConfig;
 import org.javacs.lsp.*;
 import org.javacs.markup.ColorProvider;
 import org.javacs.markup.ErrorProvider;
+import org.javacs.markup.SemanticTokenProvider;
 import org.javacs.navigation.DefinitionProvider;
+import org.javacs.navigation.ImplementationProvider;
+import org.javacs.navigation.ReferenceCounts;
 import org.javacs.navigation.ReferenceProvider;
 import org.javacs.rewrite.*;
 
@@ -49,7 +56,13 @@ class JavaLanguageServer extends LanguageServer {
 
     JavaCompilerService compiler() {
         if (needsCompiler()) {
+            if (cacheCompiler != null) {
+                cacheCompiler.references.save();
+                cacheCompiler.chunks.release();
+            }
             cacheCompiler = createCompiler();
+            cacheCompiler.chunks.progress = chunkProgress;
+            cacheCompiler.errorBudget = errorBudget();
             cacheSettings = settings;
             modifiedBuild = false;
         }
@@ -72,17 +85,83 @@ class JavaLanguageServer extends LanguageServer {
         LOG.info("Lint " + files.size() + " files...");
         var started = Instant.now();
         try (var task = compiler().compile(files.toArray(Path[]::new))) {
-            var compiled = Instant.now();
-            LOG.info("...compiled in " + Duration.between(started, compiled).toMillis() + " ms");
-            for (var errs : new ErrorProvider(task).errors()) {
-                client.publishDiagnostics(errs);
+            publish(task, started);
+        }
+    }
+
+    /**
+     * Lint `file` while the user is idle, leaving a warm compile that the next request for `file` can reuse. Gives up
+     * with CompileAborted as soon as another edit arrives.
+     */
+    private void lintSpeculatively(Path file) {
+        LOG.info("Speculatively lint " + file + "...");
+        var started = Instant.now();
+        var edits = editsReceived;
+        try (var task = compiler().compileSpeculatively(() -> editsReceived != edits, file)) {
+            publish(task, started);
+        }
+    }
+
+    private void publish(CompileTask task, Instant started) {
+        var compiled = Instant.now();
+        LOG.info("...compiled in " + Duration.between(started, compiled).toMillis() + " ms");
+        var unchanged = 0;
+        // Only open files are colored; the workspace check also publishes closed files
+        var colorProvider = new ColorProvider(task, FileStore.activeDocuments());
+        for (var errs : new ErrorProvider(task, colorProvider).errors()) {
+            if (workspaceLint != null) {
+                workspaceLint.record(errs);
             }
-            for (var colors : new ColorProvider(task).colors()) {
-                client.customNotification("java/colors", GSON.toJsonTree(colors));
+            if (hasErrors(errs)) {
+                filesWithErrors.add(Paths.get(errs.uri));
+            } else {
+                filesWithErrors.remove(Paths.get(errs.uri));
             }
-            var published = Instant.now();
-            LOG.info("...published in " + Duration.between(started, published).toMillis() + " ms");
+            if (!changedSincePublished(publishedErrors, errs.uri, errs.diagnostics)) {
+                unchanged++;
+                continue;
+            }
+            client.publishDiagnostics(errs);
+        }
+        for (var colors : colorProvider.colors()) {
+            if (FileStore.isJavaFile(colors.uri)) {
+                var version = FileStore.version(Paths.get(colors.uri));
+                if (version != -1) semanticTokens.update(colors, version);
+            }
+            // Clients that support semantic tokens ask for them instead
+            if (clientSupportsSemanticTokens) continue;
+            if (!changedSincePublished(publishedColors, colors.uri, colors)) continue;
+            client.customNotification("java/colors", GSON.toJsonTree(colors));
         }
+        if (unchanged > 0) {
+            LOG.info("...diagnostics of " + unchanged + " files are unchanged");
+        }
+        compiler().references.update(task);
+        var published = Instant.now();
+        LOG.info("...published in " + Duration.between(started, published).toMillis() + " ms");
+    }
+
+    /**
+     * Checksums of the diagnostics and colors that were last published for each file. Keyed by Path, because the
+     * client may encode the same file's URI differently than Path.toUri(), for example file:///d%3A/... on Windows.
+     */
+    private final Map<Path, Long> publishedErrors = new HashMap<>(), publishedColors = new HashMap<>();
+    /** Files whose last published diagnostics include an error */
+    private final Set<Path> filesWithErrors = new HashSet<>();
+
+    private static boolean hasErrors(PublishDiagnosticsParams errs) {
+        for (var d : errs.diagnostics) {
+            if (d.severity != null && d.severity == DiagnosticSeverity.Error) return true;
+        }
+        return false;
+    }
+
+    /** Record the checksum of `content` as the last one published for `uri`; returns false if it's the same */
+    private static boolean changedSincePublished(Map<Path, Long> published, URI uri, Object content) {
+        var crc = new CRC32();
+        crc.update(GSON.toJson(content).getBytes(StandardCharsets.UTF_8));
+        var previous = published.put(Paths.get(uri), crc.getValue());
+        return previous == null || previous != crc.getValue();
     }
 
     private void javaStartProgress(JavaStartProgressParams params) {
@@ -97,6 +176,24 @@ class JavaLanguageServer extends LanguageServer {
         client.customNotification("java/endProgress", JsonNull.INSTANCE);
     }
 
+    private final ChunkedCompiler.Progress chunkProgress =
+            new ChunkedCompiler.Progress() {
+                @Override
+                public void start(String message) {
+                    javaStartProgress(new JavaStartProgressParams(message));
+                }
+
+                @Override
+                public void report(String message, int increment) {
+                    javaReportProgress(new JavaReportProgressParams(message, increment));
+                }
+
+                @Override
+                public void end() {
+                    javaEndProgress();
+                }
+            };
+
     private JavaCompilerService createCompiler() {
         Objects.requireNonNull(workspaceRoot, "Can't create compiler because workspaceRoot has not been initialized");
 
@@ -156,6 +253,24 @@ class JavaLanguageServer extends LanguageServer {
         return paths;
     }
 
+    /** How long the user must stop editing before we speculatively compile the file they were editing */
+    private long speculativeCompileDelay() {
+        if (!settings.has("speculativeCompileDelay")) return 200;
+        return settings.get("speculativeCompileDelay").getAsLong();
+    }
+
+    /** How many errors, and separately warnings, javac reports per file in a compilation before it stops */
+    private int errorBudget() {
+        if (!settings.has("maxErrors")) return 100;
+        return settings.get("maxErrors").getAsInt();
+    }
+
+    /** Whether to compile the files touched by a rename with the edits applied, and refuse renames that break them */
+    private boolean verifyRename() {
+        if (!settings.has("verifyRename")) return false;
+        return settings.get("verifyRename").getAsBoolean();
+    }
+
     private Set<String> addExports() {
         if (!settings.has("addExports")) return Set.of();
         var array = settings.getAsJsonArray("addExports");
@@ -169,6 +284,8 @@ class JavaLanguageServer extends LanguageServer {
     @Override
     public InitializeResult initialize(InitializeParams params) {
         this.workspaceRoot = Paths.get(params.rootUri);
+        this.clientSupportsSemanticTokens = supportsSemanticTokens(params.capabilities);
+        this.clientSupportsCodeActionResolve = supportsCodeActionResolve(params.capabilities);
         FileStore.setWorkspaceRoots(Set.of(Paths.get(params.rootUri)));
 
         var c = new JsonObject();
@@ -188,13 +305,30 @@ class JavaLanguageServer extends LanguageServer {
         c.add("signatureHelpProvider", signatureHelpOptions);
         c.addProperty("referencesProvider", true);
         c.addProperty("definitionProvider", true);
+        c.addProperty("implementationProvider", true);
         c.addProperty("workspaceSymbolProvider", true);
         c.addProperty("documentSymbolProvider", true);
         c.addProperty("documentFormattingProvider", true);
         var codeLensOptions = new JsonObject();
+        codeLensOptions.addProperty("resolveProvider", true);
         c.add("codeLensProvider", codeLensOptions);
         c.addProperty("foldingRangeProvider", true);
-        c.addProperty("codeActionProvider", true);
+        var legend = new JsonObject();
+        legend.add("tokenTypes", GSON.toJsonTree(SemanticTokenProvider.TOKEN_TYPES));
+        legend.add("tokenModifiers", GSON.toJsonTree(SemanticTokenProvider.TOKEN_MODIFIERS));
+        var full = new JsonObject();
+        full.addProperty("delta", true);
+        var semanticTokensOptions = new JsonObject();
+        semanticTokensOptions.add("legend", legend);
+        semanticTokensOptions.add("full", full);
+        semanticTokensOptions.addProperty("range", true);
+        c.add("semanticTokensProvider", semanticTokensOptions);
+        var codeActionOptions = new JsonObject();
+        codeActionOptions.addProperty("resolveProvider", true);
+        c.add("codeActionProvider", codeActionOptions);
+        var executeCommandOptions = new JsonObject();
+        executeCommandOptions.add("commands", GSON.toJsonTree(List.of(APPLY_CODE_ACTION, FIX_ALL)));
+        c.add("executeCommandProvider", executeCommandOptions);
         //rename provider
 //        var renameOptions = new JsonObject();
 //        renameOptions.addProperty("prepareProvider", true);
@@ -226,7 +360,14 @@ class JavaLanguageServer extends LanguageServer {
     }
 
     @Override
-    public void shutdown() {}
+    public void shutdown() {
+        if (cacheCompiler != null) {
+            cacheCompiler.references.save();
+        }
+        if (workspaceLint != null) {
+            workspaceLint.save();
+        }
+    }
 
     public JavaLanguageServer(LanguageClient client) {
         this.client = client;
@@ -235,7 +376,24 @@ class JavaLanguageServer extends LanguageServer {
 
     @Override
     public List<SymbolInformation> workspaceSymbols(WorkspaceSymbolParams params) {
-        return new SymbolProvider(compiler()).findSymbols(params.query, 50);
+        var provider = new SymbolProvider(compiler());
+        if (params.partialResultToken == null) {
+            return provider.findSymbols(params.query, 50);
+        }
+        provider.findSymbols(params.query, 50, partialResults(params.partialResultToken), cancelledFromNow());
+        // Everything has already been sent as partial results
+        return List.of();
+    }
+
+    /** Send each group of results to the client as soon as it's found, using the token the client sent */
+    private <T> Consumer<List<T>> partialResults(JsonElement token) {
+        return part -> client.progress(new ProgressParams(token, part));
+    }
+
+    /** Becomes true if the client cancels the request that is running now */
+    private BooleanSupplier cancelledFromNow() {
+        var cancelled = requestsCancelled;
+        return () -> requestsCancelled != cancelled;
     }
 
     @Override
@@ -253,15 +411,22 @@ class JavaLanguageServer extends LanguageServer {
                 switch (c.type) {
                     case FileChangeType.Created:
                         FileStore.externalCreate(file);
+                        if (workspaceLint != null) workspaceLint.enqueue(file, WorkspaceLint.CHANGED);
                         break;
                     case FileChangeType.Changed:
                         FileStore.externalChange(file);
+                        if (workspaceLint != null) workspaceLint.enqueue(file, WorkspaceLint.CHANGED);
                         break;
                     case FileChangeType.Deleted:
                         FileStore.externalDelete(file);
+                        if (workspaceLint != null) {
+                            workspaceLint.forget(file);
+                            publishedErrors.remove(file);
+                            client.publishDiagnostics(new PublishDiagnosticsParams(c.uri, List.of()));
+                        }
                         break;
                 }
-                return;
+                continue;
             }
             var name = file.getFileName().toString();
             switch (name) {
@@ -340,6 +505,19 @@ class JavaLanguageServer extends LanguageServer {
         return Optional.of(found); //将非null的found包装为Optional对象
     }
 
+    @Override
+    public Optional<List<Location>> gotoImplementation(TextDocumentPositionParams position) {
+        if (!FileStore.isJavaFile(position.textDocument.uri)) return Optional.empty();
+        var file = Paths.get(position.textDocument.uri);
+        var line = position.position.line + 1;
+        var column = position.position.character + 1;
+        var found = new ImplementationProvider(compiler(), file, line, column).find();
+        if (found == ImplementationProvider.NOT_SUPPORTED) {
+            return Optional.empty();
+        }
+        return Optional.of(found);
+    }
+
     public String extractRelativeUri(URI uri) {
         String uriString = uri.toString();
         String prefix = "file:///d%3A/work24/";
@@ -353,60 +531,21 @@ class JavaLanguageServer extends LanguageServer {
 
     @Override
     public Optional<List<Location>> findReferences(ReferenceParams position) throws IOException {
-        //change to test cost of component
-
         if (!FileStore.isJavaFile(position.textDocument.uri)) return Optional.empty();
         var file = Paths.get(position.textDocument.uri);
         var line = position.position.line + 1;
         var column = position.position.character + 1;
-
-        //        var found = new ReferenceProvider(compiler(), file, line, column).find();
-//        if (found == ReferenceProvider.NOT_SUPPORTED) {
-//            return Optional.empty();
-//        }
-//        return Optional.of(found);
-
-        String uriString = extractRelativeUri(position.textDocument.uri);
-
-        //test compile component
-        var started1 = Instant.now();
-        var task = compiler().compile(file);
-        var elapsedMs1 = Duration.between(started1, Instant.now()).toMillis();
-        LOG.info("compile component: "+ elapsedMs1 + " document: " + uriString);
-
-        //test locate component
-        var started2 = Instant.now();
-        var cursor = task.root().getLineMap().getPosition(line, column);
-        var path = new FindNameAt(task).scan(task.root(), cursor);
-        var elapsedMs2 = Duration.between(started2, Instant.now()).toMillis();
-        LOG.info("locate component: "+ elapsedMs2 + " document: " + uriString);
-
-        //test traverse component
-        var started3 = Instant.now();
-//        var traverse = new FindNameAt(task).scan(task.root(), null);
-//        var elapsedMs3 = Duration.between(started1, Instant.now()).toMillis();
-//        LOG.info("traverse component: "+ elapsedMs3 + " document: " + uriString);
-
-        //count nodeNum
-        NodeCounter counter = new NodeCounter();
-        counter.scan(task.root(),null);
-        var elapsedMs3 = Duration.between(started3, Instant.now()).toMillis();
-        LOG.info("traverse component: "+ elapsedMs3 + " document: " + uriString);
-        LOG.info("NOD: "+ counter.getCount() + " document: " + uriString);
-
-        //count definitionSymbol
-        DefinitionCounter counter2 = new DefinitionCounter();
-        counter2.scan(task.root(),null);
-        LOG.info("DEF: "+ counter2.getAllCount() + " document: " + uriString);
-
-        //count OccurSymbol
-        OccurCounter occurCounter = new OccurCounter();
-        occurCounter.scan(task.root(),null);
-        LOG.info("OCC: "+ occurCounter.getTotalOccurrencesOptimized() + " document: " + uriString);
-
-        String filePath = file.toFile().getAbsolutePath();
-        LOG.info("LOC: "+ (int) Files.lines(Paths.get(filePath)).count() + " document: " + uriString);
-        return Optional.empty();
+        var provider = new ReferenceProvider(compiler(), file, line, column);
+        if (position.partialResultToken == null) {
+            var found = provider.find();
+            if (found == ReferenceProvider.NOT_SUPPORTED) {
+                return Optional.empty();
+            }
+            return Optional.of(found);
+        }
+        provider.find(partialResults(position.partialResultToken), cancelledFromNow());
+        // Everything has already been sent as partial results
+        return Optional.of(List.of());
     }
 
     @Override
@@ -420,31 +559,86 @@ class JavaLanguageServer extends LanguageServer {
     public List<CodeLens> codeLens(CodeLensParams params) {
         if (!FileStore.isJavaFile(params.textDocument.uri)) return List.of();
         var file = Paths.get(params.textDocument.uri);
-        var task = compiler().parse(file);
-        return CodeLensProvider.find(task);
+        // Only the background workspace check fills the reference index, so without it there would never be counts
+        return CodeLensProvider.find(Outline.of(file), checkWorkspace());
     }
 
     @Override
     public CodeLens resolveCodeLens(CodeLens unresolved) {
-        return null;
+        if (unresolved.data == null || !unresolved.data.isJsonArray()) return unresolved;
+        return CodeLensProvider.resolve(compiler(), unresolved);
     }
 
     @Override
     public List<TextEdit> formatting(DocumentFormattingParams params) {
-        var edits = new ArrayList<TextEdit>();
         var file = Paths.get(params.textDocument.uri);
-        var fixImports = new AutoFixImports(file).rewrite(compiler()).get(file);
-        Collections.addAll(edits, fixImports);
-        var addOverrides = new AutoAddOverrides(file).rewrite(compiler()).get(file);
-        Collections.addAll(edits, addOverrides);
-        return edits;
+        var edits = new FixAll(new Path[] {file}).rewrite(compiler()).get(file);
+        if (edits == null) return List.of();
+        return List.of(edits);
     }
 
     @Override
     public List<FoldingRange> foldingRange(FoldingRangeParams params) {
         if (!FileStore.isJavaFile(params.textDocument.uri)) return List.of();
         var file = Paths.get(params.textDocument.uri);
-        return new FoldProvider(compiler()).foldingRanges(file);
+        return FoldProvider.foldingRanges(Outline.of(file));
+    }
+
+    private boolean clientSupportsSemanticTokens;
+    private final SemanticTokenProvider semanticTokens = new SemanticTokenProvider();
+
+    private static boolean supportsSemanticTokens(JsonElement capabilities) {
+        if (capabilities == null || !capabilities.isJsonObject()) return false;
+        var textDocument = capabilities.getAsJsonObject().get("textDocument");
+        if (textDocument == null || !textDocument.isJsonObject()) return false;
+        return textDocument.getAsJsonObject().has("semanticTokens");
+    }
+
+    @Override
+    public SemanticTokens semanticTokensFull(SemanticTokensParams params) {
+        if (!FileStore.isJavaFile(params.textDocument.uri)) return new SemanticTokens(null, new int[0]);
+        updateSemanticTokens(params.textDocument.uri);
+        return semanticTokens.full(params.textDocument.uri);
+    }
+
+    @Override
+    public Object semanticTokensFullDelta(SemanticTokensDeltaParams params) {
+        if (!FileStore.isJavaFile(params.textDocument.uri)) return new SemanticTokens(null, new int[0]);
+        updateSemanticTokens(params.textDocument.uri);
+        return semanticTokens.delta(params.textDocument.uri, params.previousResultId);
+    }
+
+    @Override
+    public SemanticTokens semanticTokensRange(SemanticTokensRangeParams params) {
+        var uri = params.textDocument.uri;
+        if (!FileStore.isJavaFile(uri)) return new SemanticTokens(null, new int[0]);
+        var file = Paths.get(uri);
+        if (semanticTokens.isCurrent(uri, FileStore.version(file))) {
+            return semanticTokens.range(uri, params.range);
+        }
+        // Only color the visible range now, and leave the rest of the file to the next speculative lint
+        try (var task = compiler().compile(file)) {
+            if (!uncheckedChanges) {
+                lastEdited = file;
+                uncheckedChanges = true;
+            }
+            return SemanticTokenProvider.partial(new ColorProvider(task).colors(uri, params.range));
+        }
+    }
+
+    /** Compile `uri` if the latest lint didn't already find the tokens of its current version */
+    private void updateSemanticTokens(URI uri) {
+        var file = Paths.get(uri);
+        var version = FileStore.version(file);
+        if (semanticTokens.isCurrent(uri, version)) return;
+        try (var task = compiler().compile(file)) {
+            for (var colors : new ColorProvider(task).colors()) {
+                // Compare paths, because the client may encode the URI differently than toUri()
+                if (Paths.get(colors.uri).equals(file)) {
+                    semanticTokens.update(colors, version);
+                }
+            }
+        }
     }
 
     @Override
@@ -510,14 +704,25 @@ class JavaLanguageServer extends LanguageServer {
     public WorkspaceEdit rename(RenameParams params) {
         var started = Instant.now();
         var rw = createRewrite(params);
+        var map = rw.rewrite(compiler());
         var elapsedMs = Duration.between(started, Instant.now()).toMillis();
         LOG.info("rename: "+ elapsedMs + " document: " + extractRelativeUri(params.textDocument.uri));
         var response = new WorkspaceEdit();
-        //test rename cost
-//        var map = rw.rewrite(compiler());
-//        for (var editedFile : map.keySet()) {
-//            response.changes.put(editedFile.toUri(), List.of(map.get(editedFile)));
-//        }
+        if (verifyRename() && !map.isEmpty()) {
+            var errors = VerifyEdits.newErrors(compiler(), map);
+            if (!errors.isEmpty()) {
+                var message = new ShowMessageParams();
+                message.type = MessageType.Warning;
+                var first = errors.get(0);
+                message.message =
+                        String.format("Rename would introduce %d errors, for example %s", errors.size(), first);
+                client.showMessage(message);
+                return response;
+            }
+        }
+        for (var editedFile : map.keySet()) {
+            response.changes.put(editedFile.toUri(), List.of(map.get(editedFile)));
+        }
         return response;
     }
 
@@ -554,7 +759,8 @@ class JavaLanguageServer extends LanguageServer {
             var type = method.getParameters().get(i).asType();
             erasedParameterTypes[i] = task.task.getTypes().erasure(type).toString();
         }
-        return new RenameMethod(className, methodName, erasedParameterTypes, newName);
+        var parameterTypes = TypeHierarchy.parameterTypes(method);
+        return new RenameMethod(className, methodName, erasedParameterTypes, parameterTypes, newName);
     }
 
     private RenameField renameField(CompileTask task, VariableElement field, String newName) {
@@ -574,12 +780,19 @@ class JavaLanguageServer extends LanguageServer {
 
     private boolean uncheckedChanges = false;
     private Path lastEdited = Paths.get("");
+    private Instant lastEditedAt = Instant.EPOCH;
+    /** Incremented on the reader thread, so speculative compiles can notice edits that haven't been processed yet */
+    private volatile int editsReceived;
+    /** Incremented on the reader thread, so long-running requests can notice they have been cancelled */
+    private volatile int requestsCancelled;
 
     @Override
     public void didOpenTextDocument(DidOpenTextDocumentParams params) {
         FileStore.open(params);
         if (!FileStore.isJavaFile(params.textDocument.uri)) return;
+        signatures.remember(Paths.get(params.textDocument.uri));
         lastEdited = Paths.get(params.textDocument.uri);
+        lastEditedAt = Instant.now();
         uncheckedChanges = true;
 
         try{
@@ -605,43 +818,280 @@ class JavaLanguageServer extends LanguageServer {
     public void didChangeTextDocument(DidChangeTextDocumentParams params) {
         FileStore.change(params);
         lastEdited = Paths.get(params.textDocument.uri);
+        lastEditedAt = Instant.now();
         uncheckedChanges = true;
     }
 
+    @Override
+    public void editReceived() {
+        editsReceived++;
+    }
+
+    @Override
+    public void requestCancelled() {
+        requestsCancelled++;
+    }
+
     @Override
     public void didCloseTextDocument(DidCloseTextDocumentParams params) {
         FileStore.close(params);
 
         if (FileStore.isJavaFile(params.textDocument.uri)) {
+            signatures.forget(Paths.get(params.textDocument.uri));
+            Outline.forget(Paths.get(params.textDocument.uri));
+            ReferenceCounts.forget(Paths.get(params.textDocument.uri));
+            semanticTokens.forget(params.textDocument.uri);
+            if (workspaceLint != null) {
+                // Keep showing errors, but check the file again because it has reverted to its contents on disk
+                workspaceLint.enqueue(Paths.get(params.textDocument.uri), WorkspaceLint.CHANGED);
+                return;
+            }
+            var closed = Paths.get(params.textDocument.uri);
+            publishedErrors.remove(closed);
+            publishedColors.remove(closed);
+            filesWithErrors.remove(closed);
             // Clear diagnostics
             client.publishDiagnostics(new PublishDiagnosticsParams(params.textDocument.uri, List.of()));
         }
     }
 
+    private static final String APPLY_CODE_ACTION = "java.command.applyCodeAction";
+    private static final String FIX_ALL = "java.command.fixAll";
+    private boolean clientSupportsCodeActionResolve;
+
+    private static boolean supportsCodeActionResolve(JsonElement capabilities) {
+        if (capabilities == null || !capabilities.isJsonObject()) return false;
+        var textDocument = capabilities.getAsJsonObject().get("textDocument");
+        if (textDocument == null || !textDocument.isJsonObject()) return false;
+        var codeAction = textDocument.getAsJsonObject().get("codeAction");
+        if (codeAction == null || !codeAction.isJsonObject()) return false;
+        return codeAction.getAsJsonObject().has("resolveSupport");
+    }
+
     @Override
     public List<CodeAction> codeAction(CodeActionParams params) {
         var provider = new CodeActionProvider(compiler());
+        List<CodeAction> actions;
         if (params.context.diagnostics.isEmpty()) {
-            return provider.codeActionsForCursor(params);
+            actions = provider.codeActionsForCursor(params);
+        } else {
+            actions = provider.codeActionForDiagnostics(params);
+        }
+        if (params.context.diagnostics.isEmpty() && FileStore.isJavaFile(params.textDocument.uri)) {
+            var packageName = FileStore.packageName(Paths.get(params.textDocument.uri));
+            if (packageName != null) {
+                actions.add(fixAll("Fix imports and overrides in package " + packageName, packageName));
+            }
+            actions.add(fixAll("Fix imports and overrides in workspace", null));
+        }
+        // Clients that can't resolve actions run a command instead, which computes the edits and applies them
+        if (!clientSupportsCodeActionResolve) {
+            for (var a : actions) {
+                if (a.command != null) continue;
+                var arguments = new JsonArray();
+                arguments.add(a.title);
+                arguments.add(a.data);
+                a.command = new Command(a.title, APPLY_CODE_ACTION, arguments);
+            }
+        }
+        return actions;
+    }
+
+    /** An action that fixes every file in `packageName`, or in the workspace if it's null, when it's run */
+    private CodeAction fixAll(String title, String packageName) {
+        var arguments = new JsonArray();
+        if (packageName != null) arguments.add(packageName);
+        var a = new CodeAction();
+        a.kind = CodeActionKind.Source;
+        a.title = title;
+        a.command = new Command(title, FIX_ALL, arguments);
+        return a;
+    }
+
+    @Override
+    public CodeAction resolveCodeAction(CodeAction unresolved) {
+        var action = new CodeActionProvider(compiler()).resolve(unresolved);
+        if (action.edit == null && action.data != null) warnNotApplied(action);
+        return action;
+    }
+
+    /** Tell the user that `action` can't be applied, instead of silently doing nothing when they pick it */
+    private void warnNotApplied(CodeAction action) {
+        var message = new ShowMessageParams();
+        message.type = MessageType.Warning;
+        if (CodeActionProvider.isOutOfDate(action)) {
+            message.message =
+                    String.format("`%s` is out of date because the file has changed, try again", action.title);
         } else {
-            return provider.codeActionForDiagnostics(params);
+            message.message = String.format("`%s` no longer applies", action.title);
+        }
+        client.showMessage(message);
+    }
+
+    @Override
+    public void executeCommand(ExecuteCommandParams params) {
+        if (FIX_ALL.equals(params.command)) {
+            Collection<Path> files;
+            if (params.arguments != null && params.arguments.size() > 0) {
+                files = FileStore.list(params.arguments.get(0).getAsString());
+            } else {
+                files = FileStore.all();
+            }
+            var edits = new FixAll(files.toArray(Path[]::new)).rewrite(compiler());
+            if (edits.isEmpty()) return;
+            var edit = new WorkspaceEdit();
+            for (var file : edits.keySet()) {
+                edit.changes.put(file.toUri(), List.of(edits.get(file)));
+            }
+            client.applyEdit(new ApplyWorkspaceEditParams("Fix imports and overrides", edit));
+            return;
+        }
+        if (!APPLY_CODE_ACTION.equals(params.command)) {
+            LOG.warning("Don't know how to execute " + params.command);
+            return;
+        }
+        var action = new CodeAction();
+        action.title = params.arguments.get(0).getAsString();
+        action.data = params.arguments.get(1);
+        new CodeActionProvider(compiler()).resolve(action);
+        if (action.edit == null) {
+            warnNotApplied(action);
+            return;
         }
+        client.applyEdit(new ApplyWorkspaceEditParams(action.title, action.edit));
     }
 
     @Override
     public void didSaveTextDocument(DidSaveTextDocumentParams params) {
         if (FileStore.isJavaFile(params.textDocument.uri)) {
-            // Re-lint all active documents
-            lint(FileStore.activeDocuments());
+            lint(affectedBySave(Paths.get(params.textDocument.uri)));
         }
     }
 
+    private final ApiSignatures signatures = new ApiSignatures();
+
+    /**
+     * The open files that could have gained or lost errors when `saved` was saved: `saved` itself, and if its API
+     * changed, the open files that refer to a class declared in `saved`. Files that weren't compiled since they were
+     * last edited, or that have errors that `saved` might have fixed, are also included.
+     */
+    private Set<Path> affectedBySave(Path saved) {
+        var affected = new LinkedHashSet<Path>();
+        affected.add(saved);
+        var changed = signatures.changedClasses(saved);
+        if (changed.isEmpty()) {
+            LOG.info("...signature of " + saved.getFileName() + " is unchanged, only lint it");
+            return affected;
+        }
+        var index = compiler().references;
+        for (var open : FileStore.activeDocuments()) {
+            if (open.equals(saved)) continue;
+            if (!index.isFresh(open)
+                    || filesWithErrors.contains(open)
+                    || index.mentions(open, id -> refersTo(id, changed))) {
+                affected.add(open);
+            }
+        }
+        if (workspaceLint != null) {
+            for (var f : FileStore.all()) {
+                if (affected.contains(f) || !index.isFresh(f)) continue;
+                if (index.mentions(f, id -> refersTo(id, changed))) {
+                    workspaceLint.enqueue(f, WorkspaceLint.DEPENDENT);
+                }
+            }
+        }
+        LOG.info(
+                String.format(
+                        "...signature of %s changed, lint %d of %d open files",
+                        saved.getFileName(), affected.size(), FileStore.activeDocuments().size()));
+        return affected;
+    }
+
+    private static boolean refersTo(String id, List<String> classes) {
+        for (var c : classes) {
+            if (id.equals(c) || id.startsWith(c + "#") || id.startsWith(c + ".")) return true;
+        }
+        return false;
+    }
+
     @Override
-    public void doAsyncWork() {
-        if (uncheckedChanges && FileStore.activeDocuments().contains(lastEdited)) {
-            lint(List.of(lastEdited));
+    public boolean doAsyncWork() {
+        var more = lintInBackground();
+        // Keep coming back until the chunked compiler's idle compilers have been released
+        var resident = cacheCompiler != null && cacheCompiler.chunks.releaseIfIdle();
+        // ...and until the reference index has been saved
+        var unsaved = cacheCompiler != null && cacheCompiler.references.saveIfDue();
+        return more || resident || unsaved;
+    }
+
+    private boolean lintInBackground() {
+        if (!uncheckedChanges || !FileStore.activeDocuments().contains(lastEdited)) return lintWorkspace();
+        var idle = Duration.between(lastEditedAt, Instant.now()).toMillis();
+        if (idle < speculativeCompileDelay()) return true;
+        try {
+            lintSpeculatively(lastEdited);
             uncheckedChanges = false;
+        } catch (CompileAborted __) {
+            LOG.info("...gave up because " + lastEdited + " was edited");
+            return false;
+        }
+        return checkWorkspace();
+    }
+
+    /** Whether to check every file in the workspace in the background, instead of only open files */
+    private boolean checkWorkspace() {
+        if (!settings.has("checkWorkspace")) return false;
+        return settings.get("checkWorkspace").getAsBoolean();
+    }
+
+    private WorkspaceLint workspaceLint;
+    private int workspaceLintReported = -1;
+
+    /**
+     * Check the next few files in the workspace, if the user has turned on checkWorkspace. Returns true if there's
+     * more to do. Gives up on the current batch as soon as another edit or request arrives.
+     */
+    private boolean lintWorkspace() {
+        if (!checkWorkspace()) return false;
+        if (workspaceLint == null) {
+            workspaceLint = new WorkspaceLint(FileStore.workspaceRoots());
+            for (var errs : workspaceLint.start()) {
+                if (!changedSincePublished(publishedErrors, errs.uri, errs.diagnostics)) continue;
+                client.publishDiagnostics(errs);
+            }
+        }
+        if (!workspaceLint.hasWork()) return false;
+        var batch = workspaceLint.next();
+        // Over the CPU or heap budget, try again later
+        if (batch.length == 0) return true;
+        if (workspaceLintReported == -1) {
+            javaStartProgress(new JavaStartProgressParams("Check workspace"));
+            workspaceLintReported = 0;
+        }
+        LOG.info("Check " + batch.length + " workspace files in the background...");
+        var started = Instant.now();
+        var edits = editsReceived;
+        try {
+            BooleanSupplier interrupted = () -> editsReceived != edits || messagesWaiting();
+            compiler().chunks.compileAside(batch, interrupted, task -> publish(task, started));
+        } catch (CompileAborted __) {
+            LOG.info("...gave up because a file was edited or a request arrived");
+            return true;
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "...failed to check " + Arrays.toString(batch), e);
+            workspaceLint.skip(batch);
+        }
+        if (!workspaceLint.hasWork()) {
+            javaEndProgress();
+            workspaceLintReported = -1;
+            workspaceLint.save();
+            return false;
         }
+        var percent = workspaceLint.percentDone();
+        var message = String.format("Checked %d%% of workspace", percent);
+        javaReportProgress(new JavaReportProgressParams(message, Math.max(0, percent - workspaceLintReported)));
+        workspaceLintReported = Math.max(percent, workspaceLintReported);
+        return true;
     }
 
     private static final Logger LOG = Logger.getLogger("main");
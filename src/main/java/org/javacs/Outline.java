@@ -0,0 +1,273 @@
+package org.javacs;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.*;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+import javax.lang.model.element.Modifier;
+import org.javacs.lsp.Position;
+import org.javacs.lsp.Range;
+
+/**
+ * Outline is the shape of one version of a file: its declarations, imports, blocks and tests. documentSymbol,
+ * foldingRange and codeLens all arrive when a file is opened, so the outline is built once per version, with one parse
+ * and one scan, and shared by all three.
+ */
+public class Outline {
+    /** A class, method or field */
+    public static class Declaration {
+        public final Tree.Kind kind;
+        public final String name;
+        /** Simple name of the class, method or field this is declared in, or the package name */
+        public final String containerName;
+        /** The package name and the names of the enclosing classes, joined with '.' */
+        public final String className;
+        public final Range range;
+        /** Start of the name of a class or method, or of the declaration if the name can't be found */
+        public final Position nameStart;
+        /** A method annotated with @Test, or a class that declares one */
+        public final boolean isTest;
+        /** An interface, an abstract class, or a method without a body that subclasses implement */
+        public final boolean isAbstract;
+        /** The parameter types of a method, from TypeHierarchy.parameterTypes, or null */
+        public final List<String> parameterTypes;
+
+        Declaration(
+                Tree.Kind kind,
+                String name,
+                String containerName,
+                String className,
+                Range range,
+                Position nameStart,
+                boolean isTest,
+                boolean isAbstract,
+                List<String> parameterTypes) {
+            this.kind = kind;
+            this.name = name;
+            this.containerName = containerName;
+            this.className = className;
+            this.range = range;
+            this.nameStart = nameStart;
+            this.isTest = isTest;
+            this.isAbstract = isAbstract;
+            this.parameterTypes = parameterTypes;
+        }
+    }
+
+    public final URI uri;
+    /** Every class, every method, and fields that are class members, in the order they appear */
+    public final List<Declaration> declarations = new ArrayList<>();
+    /** Each import statement */
+    public final List<Range> imports = new ArrayList<>();
+    /** Class bodies and blocks, starting at '{' and ending at '}' */
+    public final List<Range> blocks = new ArrayList<>();
+    /** Block comments, Javadoc, and runs of line comments on consecutive lines */
+    public final List<Range> comments = new ArrayList<>();
+
+    private final int version;
+    private final Instant modified;
+
+    private Outline(Path file) {
+        this.uri = file.toUri();
+        this.version = FileStore.version(file);
+        this.modified = FileStore.modified(file);
+    }
+
+    private static final Map<Path, Outline> cache = new HashMap<>();
+
+    /** The outline of the current version of `file` */
+    public static synchronized Outline of(Path file) {
+        var cached = cache.get(file);
+        if (cached != null && cached.isCurrent(file)) return cached;
+        var started = Instant.now();
+        var outline = new Outline(file);
+        var parse = Parser.parseFileOnce(file);
+        var scan = new Scan(outline, parse);
+        scan.scan(parse.root, null);
+        scan.scanComments();
+        cache.put(file, outline);
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(String.format("...outlined %s in %d ms", file.getFileName(), elapsed));
+        return outline;
+    }
+
+    /** Forget the outline of `file`, which has been closed */
+    public static synchronized void forget(Path file) {
+        cache.remove(file);
+    }
+
+    private boolean isCurrent(Path file) {
+        return version == FileStore.version(file) && Objects.equals(modified, FileStore.modified(file));
+    }
+
+    private static class Scan extends TreePathScanner<Void, Void> {
+        private final Outline outline;
+        private final Parser parse;
+        private final SourcePositions pos;
+        private final LineMap lines;
+        private final List<CharSequence> qualifiedName = new ArrayList<>();
+        private CharSequence containerName;
+
+        Scan(Outline outline, Parser parse) {
+            this.outline = outline;
+            this.parse = parse;
+            this.pos = parse.trees.getSourcePositions();
+            this.lines = parse.root.getLineMap();
+        }
+
+        @Override
+        public Void visitCompilationUnit(CompilationUnitTree t, Void __) {
+            var packageName = Objects.toString(t.getPackageName(), "");
+            containerName = packageName;
+            qualifiedName.add(packageName);
+            return super.visitCompilationUnit(t, null);
+        }
+
+        @Override
+        public Void visitImport(ImportTree t, Void __) {
+            outline.imports.add(range(pos.getStartPosition(parse.root, t), pos.getEndPosition(parse.root, t)));
+            return null;
+        }
+
+        @Override
+        public Void visitClass(ClassTree t, Void __) {
+            qualifiedName.add(t.getSimpleName());
+            declare(t, t.getKind(), t.getSimpleName(), nameStart(t, t.getSimpleName()), isTestClass(t));
+            var start = (int) pos.getStartPosition(parse.root, t);
+            var brace = parse.contents.indexOf('{', start);
+            if (brace != -1) start = brace;
+            outline.blocks.add(range(start, pos.getEndPosition(parse.root, t)));
+            var push = containerName;
+            containerName = t.getSimpleName();
+            super.visitClass(t, null);
+            containerName = push;
+            qualifiedName.remove(qualifiedName.size() - 1);
+            return null;
+        }
+
+        @Override
+        public Void visitMethod(MethodTree t, Void __) {
+            // Constructors are named after their class
+            var name = t.getName().contentEquals("<init>") ? qualifiedName.get(qualifiedName.size() - 1) : t.getName();
+            declare(t, t.getKind(), t.getName(), nameStart(t, name), isTestMethod(t));
+            var push = containerName;
+            containerName = t.getName();
+            super.visitMethod(t, null);
+            containerName = push;
+            return null;
+        }
+
+        @Override
+        public Void visitVariable(VariableTree t, Void __) {
+            if (getCurrentPath().getParentPath().getLeaf() instanceof ClassTree) {
+                declare(t, t.getKind(), t.getName(), null, false);
+            }
+            var push = containerName;
+            containerName = t.getName();
+            super.visitVariable(t, null);
+            containerName = push;
+            return null;
+        }
+
+        @Override
+        public Void visitBlock(BlockTree t, Void __) {
+            outline.blocks.add(range(pos.getStartPosition(parse.root, t), pos.getEndPosition(parse.root, t)));
+            return super.visitBlock(t, null);
+        }
+
+        /** Find comments with a lexer pass over the text, because the parse tree only keeps Javadoc */
+        void scanComments() {
+            for (var c : FindHelper.findComments(parse.contents)) {
+                outline.comments.add(range(c[0], c[1]));
+            }
+        }
+
+        private void declare(Tree t, Tree.Kind kind, CharSequence name, Position nameStart, boolean isTest) {
+            var range = range(pos.getStartPosition(parse.root, t), pos.getEndPosition(parse.root, t));
+            if (nameStart == null) nameStart = range.start;
+            var className = String.join(".", qualifiedName);
+            var parameterTypes = t instanceof MethodTree ? TypeHierarchy.parameterTypes(getCurrentPath()) : null;
+            var d =
+                    new Declaration(
+                            kind,
+                            name.toString(),
+                            containerName.toString(),
+                            className,
+                            range,
+                            nameStart,
+                            isTest,
+                            isAbstract(t),
+                            parameterTypes);
+            outline.declarations.add(d);
+        }
+
+        private Position nameStart(Tree t, CharSequence name) {
+            var start = (int) pos.getStartPosition(parse.root, t);
+            var end = (int) pos.getEndPosition(parse.root, t);
+            // Skip annotations, which could mention the name
+            var modifiers = t instanceof ClassTree ? ((ClassTree) t).getModifiers() : ((MethodTree) t).getModifiers();
+            var afterModifiers = (int) pos.getEndPosition(parse.root, modifiers);
+            if (afterModifiers > start) start = afterModifiers;
+            var offset = FindHelper.findNameIn(parse.root, name, start, end);
+            if (offset == -1) offset = start;
+            return position(offset);
+        }
+
+        private boolean isAbstract(Tree t) {
+            if (t instanceof ClassTree) {
+                var c = (ClassTree) t;
+                return c.getKind() == Tree.Kind.INTERFACE || c.getModifiers().getFlags().contains(Modifier.ABSTRACT);
+            }
+            if (t instanceof MethodTree) {
+                var m = (MethodTree) t;
+                if (m.getModifiers().getFlags().contains(Modifier.ABSTRACT)) return true;
+                // Interface methods without a body are implicitly abstract
+                var parent = getCurrentPath().getParentPath().getLeaf();
+                return m.getBody() == null && parent.getKind() == Tree.Kind.INTERFACE;
+            }
+            return false;
+        }
+
+        private boolean isTestClass(ClassTree t) {
+            for (var member : t.getMembers()) {
+                if (member instanceof MethodTree && isTestMethod((MethodTree) member)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isTestMethod(MethodTree t) {
+            for (var ann : t.getModifiers().getAnnotations()) {
+                var type = ann.getAnnotationType();
+                if (type instanceof IdentifierTree) {
+                    var name = ((IdentifierTree) type).getName();
+                    if (name.contentEquals("Test") || name.contentEquals("org.junit.Test")) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private Range range(long start, long end) {
+            return new Range(position(start), position(end));
+        }
+
+        private Position position(long offset) {
+            var line = (int) lines.getLineNumber(offset);
+            var column = (int) lines.getColumnNumber(offset);
+            return new Position(line - 1, column - 1);
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
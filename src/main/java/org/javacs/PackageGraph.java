@@ -0,0 +1,143 @@
+package org.javacs;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * PackageGraph records which workspace packages import which other packages. A class can only be named from its own
+ * package and from files that import it, and its members can only be reached from packages that depend on it directly
+ * or through other packages, so find-references and rename don't need to look anywhere else. The exception is a file
+ * that uses a fully qualified name like `com.foo.Bar.baz()` without importing the package, so prune keeps every file
+ * that mentions the package name. Each file's imports are only re-read when the file changes.
+ */
+class PackageGraph {
+    private final JavaCompilerService compiler;
+
+    private static class Info {
+        final Instant modified;
+        final String packageName;
+        final Set<String> importedPackages;
+
+        Info(Instant modified, String packageName, Set<String> importedPackages) {
+            this.modified = modified;
+            this.packageName = packageName;
+            this.importedPackages = importedPackages;
+        }
+    }
+
+    private final Map<Path, Info> files = new HashMap<>();
+    /** importers[p] is the set of packages that contain a file that imports p */
+    private final Map<String, Set<String>> importers = new HashMap<>();
+
+    PackageGraph(JavaCompilerService compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * The packages whose files can name a class in `packageName`: the package itself and every package that imports
+     * it. Returns null if `packageName` isn't a workspace package, because then we can't rule anything out.
+     */
+    Set<String> importersOf(String packageName) {
+        update();
+        if (!isWorkspacePackage(packageName)) return null;
+        var visible = new HashSet<String>();
+        visible.add(packageName);
+        visible.addAll(importers.getOrDefault(packageName, Set.of()));
+        return visible;
+    }
+
+    /**
+     * The packages whose files can refer to a member of a class in `packageName`: the package itself, plus every
+     * package that imports it directly or through other packages. Files can call methods of classes they never import,
+     * for example `foo.getBar().baz()`, but only by getting a value from a package that depends on `packageName`.
+     * Returns null if `packageName` isn't a workspace package.
+     */
+    Set<String> dependentsOf(String packageName) {
+        update();
+        if (!isWorkspacePackage(packageName)) return null;
+        var visible = new HashSet<String>();
+        var todo = new ArrayDeque<String>();
+        visible.add(packageName);
+        todo.add(packageName);
+        while (!todo.isEmpty()) {
+            var next = todo.remove();
+            for (var importer : importers.getOrDefault(next, Set.of())) {
+                if (visible.add(importer)) {
+                    todo.add(importer);
+                }
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Remove the files that aren't in any package in `visible` and don't mention `packageName`, which they would need
+     * to refer to it by its fully qualified name. Logs how many were pruned.
+     */
+    Path[] prune(Collection<Path> candidates, Set<String> visible, String packageName, String query) {
+        if (visible == null) return candidates.toArray(Path[]::new);
+        var keep = new ArrayList<Path>();
+        for (var f : candidates) {
+            if (visible.contains(packageName(f))
+                    || (!packageName.isEmpty() && compiler.containsWord(f, packageName))) {
+                keep.add(f);
+            }
+        }
+        LOG.info(
+                String.format(
+                        "...package graph pruned %d of %d candidate files for %s",
+                        candidates.size() - keep.size(), candidates.size(), query));
+        return keep.toArray(Path[]::new);
+    }
+
+    private boolean isWorkspacePackage(String packageName) {
+        for (var info : files.values()) {
+            if (info.packageName.equals(packageName)) return true;
+        }
+        return false;
+    }
+
+    private String packageName(Path file) {
+        var info = files.get(file);
+        if (info != null) return info.packageName;
+        var packageName = FileStore.packageName(file);
+        if (packageName == null) return "";
+        return packageName;
+    }
+
+    /** Re-read the imports of every file that has changed since the last update */
+    private void update() {
+        var changed = false;
+        var all = new HashSet<Path>(FileStore.all());
+        changed |= files.keySet().retainAll(all);
+        for (var file : all) {
+            var modified = FileStore.modified(file);
+            var info = files.get(file);
+            if (info != null && info.modified.equals(modified)) continue;
+            if (modified == null) continue;
+            var packageName = FileStore.packageName(file);
+            if (packageName == null) packageName = "";
+            var imported = new HashSet<String>();
+            for (var i : compiler.readImports(file)) {
+                imported.add(JavaCompilerService.packageName(i));
+            }
+            for (var i : compiler.readStaticImports(file)) {
+                imported.add(JavaCompilerService.packageName(i));
+            }
+            files.put(file, new Info(modified, packageName, imported));
+            changed = true;
+        }
+        if (!changed) return;
+        importers.clear();
+        for (var info : files.values()) {
+            for (var imported : info.importedPackages) {
+                if (imported.equals(info.packageName)) continue;
+                importers.computeIfAbsent(imported, __ -> new HashSet<>()).add(info.packageName);
+            }
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
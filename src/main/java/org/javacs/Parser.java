@@ -8,7 +8,6 @@ import java.nio.file.*;
 import java.time.Instant;
 import java.util.*;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 import javax.lang.model.element.*;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
@@ -65,7 +64,8 @@ class Parser {
         cachedModified = file.getLastModified();
     }
 
-    static Parser parseJavaFileObject(JavaFileObject file) {
+    // ChunkedCompiler workers look for package-private classes concurrently
+    static synchronized Parser parseJavaFileObject(JavaFileObject file) {
         if (needsParse(file)) {
             loadParse(file);
         } else {
@@ -74,6 +74,13 @@ class Parser {
         return cachedParse;
     }
 
+    /** Parse `file`, reusing the cached parse if it's current, but without replacing it */
+    static synchronized Parser parseFileOnce(Path file) {
+        var source = new SourceFileObject(file);
+        if (!needsParse(source)) return cachedParse;
+        return new Parser(source);
+    }
+
     Set<Name> packagePrivateClasses() {
         var result = new HashSet<Name>();
         for (var t : root.getTypeDecls()) {
@@ -178,11 +185,7 @@ class Parser {
     }
 
     private static int indexOf(CharSequence contents, String name, int start) {
-        var matcher = Pattern.compile("\\b" + name + "\\b").matcher(contents);
-        if (matcher.find(start)) {
-            return matcher.start();
-        }
-        return -1;
+        return FindHelper.findNameIn(contents, name, start, contents.length());
     }
 
     private static final DocCommentTree EMPTY_DOC = makeEmptyDoc();
@@ -0,0 +1,271 @@
+package org.javacs;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import javax.lang.model.element.*;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import org.javacs.lsp.Location;
+import org.javacs.lsp.Position;
+import org.javacs.lsp.Range;
+
+/**
+ * ReferenceIndex remembers, for each source file that has been compiled, where it refers to each class and member. A
+ * symbol is identified by its class name, member name and erased parameter types, for example
+ * `java.util.List#add(java.lang.Object)`. Each file's entry is only valid for the version of the file that was
+ * compiled, so find-references can answer from the index for files that haven't changed, and only compile the rest.
+ *
+ * <p>Freshness only checks the modified time of the file itself. An entry can be wrong after a file it depends on
+ * changes, for example when a callee is renamed or a new overload changes which method a call resolves to, until the
+ * file is compiled again.
+ *
+ * <p>The index is saved to the user's cache directory, so it survives restarts. Changes are written at most once per
+ * SAVE_DELAY, because the whole index is written each time.
+ */
+public class ReferenceIndex {
+    private static final Duration SAVE_DELAY = Duration.ofSeconds(30);
+
+    private static class Refs {
+        /** Modified time of the version of the file that was indexed */
+        long modified;
+        /** Ranges of references to each symbol, as [startLine, startCharacter, endLine, endCharacter, ...] */
+        Map<String, int[]> refs;
+    }
+
+    private static class Saved {
+        Map<String, Refs> files;
+    }
+
+    private final CacheFile saveFile;
+    private Map<Path, Refs> files;
+    private boolean dirty;
+    /** When the oldest change that hasn't been saved was made */
+    private Instant dirtySince;
+
+    ReferenceIndex(Set<Path> workspaceRoots) {
+        this.saveFile = new CacheFile("xref", workspaceRoots);
+    }
+
+    /** The id of `e` in the index, or null if `e` can only be referenced from the file that declares it */
+    public static String id(Types types, Element e) {
+        if (e instanceof TypeElement) {
+            var type = (TypeElement) e;
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return null;
+            }
+            return type.getQualifiedName().toString();
+        }
+        switch (e.getKind()) {
+            case FIELD:
+            case ENUM_CONSTANT:
+            case METHOD:
+            case CONSTRUCTOR:
+                break;
+            default:
+                return null;
+        }
+        var parent = id(types, e.getEnclosingElement());
+        if (parent == null) return null;
+        if (!(e instanceof ExecutableElement)) {
+            return parent + "#" + e.getSimpleName();
+        }
+        var method = (ExecutableElement) e;
+        var params = new StringJoiner(",");
+        for (var p : method.getParameters()) {
+            params.add(types.erasure(p.asType()).toString());
+        }
+        return parent + "#" + e.getSimpleName() + "(" + params + ")";
+    }
+
+    /** Is the index entry for `file` up-to-date with the current contents of `file`? */
+    public boolean isFresh(Path file) {
+        load();
+        var refs = files.get(file);
+        if (refs == null) return false;
+        var modified = FileStore.modified(file);
+        return modified != null && modified.toEpochMilli() == refs.modified;
+    }
+
+    /** References to the symbol `id` in `file`, as of the last time `file` was indexed */
+    public List<Location> find(Path file, String id) {
+        load();
+        var refs = files.get(file);
+        if (refs == null) return List.of();
+        var ranges = refs.refs.get(id);
+        if (ranges == null) return List.of();
+        var uri = file.toUri();
+        var locations = new ArrayList<Location>();
+        for (var i = 0; i < ranges.length; i += 4) {
+            var start = new Position(ranges[i], ranges[i + 1]);
+            var end = new Position(ranges[i + 2], ranges[i + 3]);
+            locations.add(new Location(uri, new Range(start, end)));
+        }
+        return locations;
+    }
+
+    /** Is every workspace file, except maybe `besides`, indexed as of its current contents? */
+    public boolean coversWorkspace(Path besides) {
+        for (var file : FileStore.all()) {
+            if (!file.equals(besides) && !isFresh(file)) return false;
+        }
+        return true;
+    }
+
+    /** Number of references to the symbol `id` in every indexed file, as of the last time each file was indexed */
+    public int count(String id) {
+        load();
+        var count = 0;
+        for (var refs : files.values()) {
+            var ranges = refs.refs.get(id);
+            if (ranges != null) count += ranges.length / 4;
+        }
+        return count;
+    }
+
+    /** Does the index entry for `file` refer to any symbol whose id satisfies `matches`? */
+    public boolean mentions(Path file, Predicate<String> matches) {
+        load();
+        var refs = files.get(file);
+        if (refs == null) return false;
+        for (var id : refs.refs.keySet()) {
+            if (matches.test(id)) return true;
+        }
+        return false;
+    }
+
+    /** Re-index every file in `task`, which must be a compilation of the current contents of those files */
+    public void update(CompileTask task) {
+        load();
+        var started = Instant.now();
+        var types = task.task.getTypes();
+        var pos = Trees.instance(task.task).getSourcePositions();
+        for (var root : task.roots) {
+            if (!root.getSourceFile().toUri().getScheme().equals("file")) continue;
+            var file = Paths.get(root.getSourceFile().toUri());
+            var modified = FileStore.modified(file);
+            if (modified == null) continue;
+            var found = new HashMap<String, List<Integer>>();
+            new FindReferencedSymbols(task.task, types, pos).scan(root, found);
+            var refs = new Refs();
+            refs.modified = modified.toEpochMilli();
+            refs.refs = new HashMap<>();
+            for (var id : found.keySet()) {
+                var ranges = found.get(id);
+                var array = new int[ranges.size()];
+                for (var i = 0; i < array.length; i++) array[i] = ranges.get(i);
+                refs.refs.put(id, array);
+            }
+            files.put(file, refs);
+        }
+        if (!dirty) dirtySince = Instant.now();
+        dirty = true;
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(String.format("...indexed references in %d files in %d ms", task.roots.size(), elapsed));
+    }
+
+    private static class FindReferencedSymbols extends TreePathScanner<Void, Map<String, List<Integer>>> {
+        final Trees trees;
+        final Types types;
+        final SourcePositions pos;
+
+        FindReferencedSymbols(JavacTask task, Types types, SourcePositions pos) {
+            this.trees = Trees.instance(task);
+            this.types = types;
+            this.pos = pos;
+        }
+
+        @Override
+        public Void visitIdentifier(IdentifierTree t, Map<String, List<Integer>> found) {
+            add(found);
+            return super.visitIdentifier(t, found);
+        }
+
+        @Override
+        public Void visitMemberSelect(MemberSelectTree t, Map<String, List<Integer>> found) {
+            add(found);
+            return super.visitMemberSelect(t, found);
+        }
+
+        @Override
+        public Void visitNewClass(NewClassTree t, Map<String, List<Integer>> found) {
+            add(found);
+            return super.visitNewClass(t, found);
+        }
+
+        @Override
+        public Void visitMemberReference(MemberReferenceTree t, Map<String, List<Integer>> found) {
+            add(found);
+            return super.visitMemberReference(t, found);
+        }
+
+        private void add(Map<String, List<Integer>> found) {
+            var path = getCurrentPath();
+            var element = trees.getElement(path);
+            if (element == null) return;
+            var id = id(types, element);
+            if (id == null) return;
+            var root = path.getCompilationUnit();
+            var start = pos.getStartPosition(root, path.getLeaf());
+            var end = pos.getEndPosition(root, path.getLeaf());
+            // Skip elements without positions. This can happen, e.g. for var types.
+            if (start == Diagnostic.NOPOS || end == Diagnostic.NOPOS) return;
+            var lines = root.getLineMap();
+            var ranges = found.computeIfAbsent(id, __ -> new ArrayList<>());
+            ranges.add((int) lines.getLineNumber(start) - 1);
+            ranges.add((int) lines.getColumnNumber(start) - 1);
+            ranges.add((int) lines.getLineNumber(end) - 1);
+            ranges.add((int) lines.getColumnNumber(end) - 1);
+        }
+    }
+
+    private void load() {
+        if (files != null) return;
+        files = new HashMap<>();
+        var saved = saveFile.load(Saved.class);
+        // Nothing has been indexed yet, or the index couldn't be read
+        if (saved == null || saved.files == null) return;
+        for (var f : saved.files.keySet()) {
+            files.put(Paths.get(f), saved.files.get(f));
+        }
+        LOG.info(String.format("...loaded references of %d files from %s", files.size(), saveFile.file));
+    }
+
+    /**
+     * Write the index to disk if it has changes that are older than SAVE_DELAY. Returns true if there are still unsaved
+     * changes, so this should be called again later.
+     */
+    public boolean saveIfDue() {
+        if (!dirty) return false;
+        if (Duration.between(dirtySince, Instant.now()).compareTo(SAVE_DELAY) < 0) return true;
+        save();
+        return dirty;
+    }
+
+    /** Write the index to disk, if it has changed since it was loaded */
+    public void save() {
+        if (!dirty) return;
+        var started = Instant.now();
+        var saved = new Saved();
+        saved.files = new HashMap<>();
+        for (var f : files.keySet()) {
+            saved.files.put(f.toString(), files.get(f));
+        }
+        if (!saveFile.save(saved)) {
+            // Try again after another SAVE_DELAY
+            dirtySince = Instant.now();
+            return;
+        }
+        dirty = false;
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(String.format("...saved references of %d files in %d ms", files.size(), elapsed));
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
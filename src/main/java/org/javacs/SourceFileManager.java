@@ -4,11 +4,15 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.*;
 import java.util.logging.Logger;
 import javax.tools.*;
 
 class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    /** Contents that replace the contents of these files in the FileStore, like the edits of a rename being verified */
+    private Map<Path, String> edits = Map.of();
+
     SourceFileManager() {
         super(createDelegateFileManager());
     }
@@ -33,7 +37,13 @@ class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFileManage
         }
     }
 
-    private JavaFileObject asJavaFileObject(Path file) {
+    void setEdits(Map<Path, String> edits) {
+        this.edits = edits;
+    }
+
+    JavaFileObject asJavaFileObject(Path file) {
+        var edited = edits.get(file);
+        if (edited != null) return new SourceFileObject(file, edited, Instant.now());
         // TODO erase method bodies of files that are not open
         return new SourceFileObject(file);
     }
@@ -70,7 +80,7 @@ class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFileManage
             var simpleClassName = StringSearch.lastName(className);
             for (var f : FileStore.list(packageName)) {
                 if (f.getFileName().toString().equals(simpleClassName + kind.extension)) {
-                    return new SourceFileObject(f);
+                    return asJavaFileObject(f);
                 }
             }
             // Fall through to disk in case we have .jar or .zip files on the source path
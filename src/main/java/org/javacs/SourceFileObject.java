@@ -2,6 +2,7 @@ package org.javacs;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.CharBuffer;
 import java.nio.file.Path;
 import java.time.Instant;
 import javax.lang.model.element.Modifier;
@@ -12,7 +13,7 @@ public class SourceFileObject implements JavaFileObject {
     /** path is the absolute path to this file on disk */
     final Path path;
     /** contents is the text in this file, or null if we should use the text in FileStore */
-    final String contents;
+    final CharSequence contents;
     /** if contents is set, the modified time of contents */
     final Instant modified;
 
@@ -20,7 +21,7 @@ public class SourceFileObject implements JavaFileObject {
         this(path, null, Instant.EPOCH);
     }
 
-    public SourceFileObject(Path path, String contents, Instant modified) {
+    public SourceFileObject(Path path, CharSequence contents, Instant modified) {
         if (!FileStore.isJavaFile(path)) throw new RuntimeException(path + " is not a java source");
         this.path = path;
         this.contents = contents;
@@ -82,7 +83,7 @@ public class SourceFileObject implements JavaFileObject {
     @Override
     public InputStream openInputStream() {
         if (contents != null) {
-            var bytes = contents.getBytes();
+            var bytes = contents.toString().getBytes();
             return new ByteArrayInputStream(bytes);
         }
         return FileStore.inputStream(path);
@@ -96,13 +97,17 @@ public class SourceFileObject implements JavaFileObject {
     @Override
     public Reader openReader(boolean ignoreEncodingErrors) {
         if (contents != null) {
-            return new StringReader(contents);
+            return new StringReader(contents.toString());
         }
         return FileStore.bufferedReader(path);
     }
 
     @Override
     public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        // Each reader of a CharBuffer gets its own position
+        if (contents instanceof CharBuffer) {
+            return ((CharBuffer) contents).duplicate();
+        }
         if (contents != null) {
             return contents;
         }
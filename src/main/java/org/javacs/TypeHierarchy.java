@@ -0,0 +1,327 @@
+package org.javacs;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.logging.Logger;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import org.javacs.lsp.Location;
+
+/**
+ * TypeHierarchy finds the supertypes and subtypes of classes declared in the workspace, using only parse trees. The
+ * names in `extends` and `implements` clauses are resolved through the file's imports and package, the same way
+ * javac would for workspace types. Each file's declarations are cached until the file changes, and only files that
+ * contain the simple name of a class are parsed when looking for its subtypes.
+ */
+public class TypeHierarchy {
+    private final JavaCompilerService compiler;
+    private final Cache<Void, List<Declaration>> cacheDeclarations = new Cache<>();
+
+    /** A class declared in a workspace file */
+    public static class Declaration {
+        public final String className;
+        /** The qualified names of the types in the `extends` and `implements` clauses */
+        public final List<String> supertypes;
+        /** The location of the class name */
+        public final Location location;
+        /** The methods, by name and number of parameters, e.g. "get/1", which overloads can share */
+        public final Map<String, List<Method>> methods;
+
+        Declaration(String className, List<String> supertypes, Location location, Map<String, List<Method>> methods) {
+            this.className = className;
+            this.supertypes = supertypes;
+            this.location = location;
+            this.methods = methods;
+        }
+
+        /**
+         * The locations of the methods that could override the method `key` with `parameterTypes`, or be overridden by
+         * it. Only methods whose parameters have the same types, by simple name, match. A type variable matches any
+         * type, because handle(T) in Handler<T> is overridden by handle(String) in a class that implements
+         * Handler<String>.
+         */
+        public List<Location> overrides(String key, List<String> parameterTypes) {
+            var found = new ArrayList<Location>();
+            for (var m : methods.getOrDefault(key, List.of())) {
+                if (sameParameters(m.parameterTypes, parameterTypes)) {
+                    found.add(m.location);
+                }
+            }
+            return found;
+        }
+    }
+
+    /** A method declared in a workspace class */
+    public static class Method {
+        /** The location of the method name */
+        public final Location location;
+        /** The parameter types, as returned by parameterTypes */
+        public final List<String> parameterTypes;
+
+        Method(Location location, List<String> parameterTypes) {
+            this.location = location;
+            this.parameterTypes = parameterTypes;
+        }
+    }
+
+    /** Stands for a parameter whose type is a type variable */
+    private static final String ANY_TYPE = "?";
+
+    private static boolean sameParameters(List<String> left, List<String> right) {
+        if (left.size() != right.size()) return false;
+        for (var i = 0; i < left.size(); i++) {
+            var l = left.get(i);
+            var r = right.get(i);
+            if (!l.equals(r) && !l.equals(ANY_TYPE) && !r.equals(ANY_TYPE)) return false;
+        }
+        return true;
+    }
+
+    /** The simple names of the erased types of the parameters of `method`, e.g. [String, int[]] */
+    public static List<String> parameterTypes(ExecutableElement method) {
+        var types = new ArrayList<String>();
+        for (var p : method.getParameters()) {
+            var type = p.asType();
+            var dimensions = "";
+            while (type.getKind() == TypeKind.ARRAY) {
+                type = ((ArrayType) type).getComponentType();
+                dimensions += "[]";
+            }
+            if (type.getKind() == TypeKind.TYPEVAR) {
+                types.add(ANY_TYPE);
+            } else if (type.getKind() == TypeKind.DECLARED) {
+                types.add(((DeclaredType) type).asElement().getSimpleName() + dimensions);
+            } else {
+                types.add(type + dimensions);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * The simple names of the types of the parameters of the method at `path`, from the parse tree, the same way as
+     * parameterTypes(ExecutableElement). Names of the type parameters of the method and its enclosing classes are
+     * type variables.
+     */
+    public static List<String> parameterTypes(TreePath path) {
+        var typeVariables = new HashSet<String>();
+        for (var p = path; p != null; p = p.getParentPath()) {
+            List<? extends TypeParameterTree> params = List.of();
+            if (p.getLeaf() instanceof MethodTree) {
+                params = ((MethodTree) p.getLeaf()).getTypeParameters();
+            } else if (p.getLeaf() instanceof ClassTree) {
+                params = ((ClassTree) p.getLeaf()).getTypeParameters();
+            }
+            for (var t : params) {
+                typeVariables.add(t.getName().toString());
+            }
+        }
+        var types = new ArrayList<String>();
+        for (var p : ((MethodTree) path.getLeaf()).getParameters()) {
+            types.add(simpleTypeName(p.getType(), typeVariables));
+        }
+        return types;
+    }
+
+    private static String simpleTypeName(Tree type, Set<String> typeVariables) {
+        if (type instanceof ArrayTypeTree) {
+            var component = simpleTypeName(((ArrayTypeTree) type).getType(), typeVariables);
+            return component.equals(ANY_TYPE) ? ANY_TYPE : component + "[]";
+        }
+        if (type instanceof ParameterizedTypeTree) {
+            return simpleTypeName(((ParameterizedTypeTree) type).getType(), typeVariables);
+        }
+        if (type instanceof AnnotatedTypeTree) {
+            return simpleTypeName(((AnnotatedTypeTree) type).getUnderlyingType(), typeVariables);
+        }
+        if (type instanceof MemberSelectTree) {
+            return ((MemberSelectTree) type).getIdentifier().toString();
+        }
+        var name = type.toString();
+        return typeVariables.contains(name) ? ANY_TYPE : name;
+    }
+
+    TypeHierarchy(JavaCompilerService compiler) {
+        this.compiler = compiler;
+    }
+
+    /** Every workspace class that extends or implements `className`, directly or indirectly */
+    public List<Declaration> subtypes(String className) {
+        var found = new ArrayList<Declaration>();
+        var seen = new HashSet<String>();
+        var todo = new ArrayDeque<String>();
+        seen.add(className);
+        todo.add(className);
+        while (!todo.isEmpty()) {
+            var next = todo.remove();
+            var simpleName = next.substring(next.lastIndexOf('.') + 1);
+            for (var file : FileStore.all()) {
+                if (!compiler.containsWord(file, simpleName)) continue;
+                for (var d : declarations(file)) {
+                    if (d.supertypes.contains(next) && seen.add(d.className)) {
+                        found.add(d);
+                        todo.add(d.className);
+                    }
+                }
+            }
+        }
+        LOG.info(String.format("...found %d subtypes of %s", found.size(), className));
+        return found;
+    }
+
+    /** Every workspace class that `className` extends or implements, directly or indirectly */
+    public List<Declaration> supertypes(String className) {
+        var found = new ArrayList<Declaration>();
+        var seen = new HashSet<String>();
+        var todo = new ArrayDeque<String>();
+        seen.add(className);
+        todo.add(className);
+        while (!todo.isEmpty()) {
+            var next = declaration(todo.remove());
+            if (next.isEmpty()) continue;
+            for (var s : next.get().supertypes) {
+                if (!seen.add(s)) continue;
+                var d = declaration(s);
+                if (d.isEmpty()) continue;
+                found.add(d.get());
+                todo.add(s);
+            }
+        }
+        return found;
+    }
+
+    /** The key of a method in Declaration.methods */
+    public static String methodKey(CharSequence methodName, int parameterCount) {
+        return methodName + "/" + parameterCount;
+    }
+
+    /** The declaration of `className`, if it's declared in the workspace */
+    public Optional<Declaration> declaration(String className) {
+        var file = compiler.findTypeDeclaration(className);
+        if (file == CompilerProvider.NOT_FOUND) return Optional.empty();
+        for (var d : declarations(file)) {
+            if (d.className.equals(className)) {
+                return Optional.of(d);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private List<Declaration> declarations(Path file) {
+        if (cacheDeclarations.needs(file, null)) {
+            var parse = Parser.parseFile(file);
+            var found = new ArrayList<Declaration>();
+            new FindDeclarations(parse).scan(parse.root, found);
+            cacheDeclarations.load(file, null, found);
+        }
+        return cacheDeclarations.get(file, null);
+    }
+
+    private class FindDeclarations extends TreePathScanner<Void, List<Declaration>> {
+        final Parser parse;
+        final String packageName;
+        final List<String> imports = new ArrayList<>();
+        /** Every class declared in this file, including nested classes */
+        final List<String> declared = new ArrayList<>();
+        final List<String> qualifiedName = new ArrayList<>();
+
+        FindDeclarations(Parser parse) {
+            this.parse = parse;
+            this.packageName = Objects.toString(parse.root.getPackageName(), "");
+            for (var i : parse.root.getImports()) {
+                if (i.isStatic()) continue;
+                imports.add(i.getQualifiedIdentifier().toString());
+            }
+            new FindTypeDeclarations().scan(parse.root, declared);
+        }
+
+        @Override
+        public Void visitClass(ClassTree t, List<Declaration> found) {
+            // Anonymous classes can't be named in an extends clause
+            if (t.getSimpleName().length() == 0) return super.visitClass(t, found);
+            qualifiedName.add(t.getSimpleName().toString());
+            var className = packageName.isEmpty() ? "" : packageName + ".";
+            className += String.join(".", qualifiedName);
+            var supertypes = new ArrayList<String>();
+            if (t.getExtendsClause() != null) {
+                supertypes.add(resolve(t.getExtendsClause()));
+            }
+            for (var i : t.getImplementsClause()) {
+                supertypes.add(resolve(i));
+            }
+            var methods = new HashMap<String, List<Method>>();
+            for (var member : t.getMembers()) {
+                if (!(member instanceof MethodTree)) continue;
+                var method = (MethodTree) member;
+                var key = methodKey(method.getName(), method.getParameters().size());
+                var path = new TreePath(getCurrentPath(), method);
+                var entry = new Method(location(path), parameterTypes(path));
+                methods.computeIfAbsent(key, __ -> new ArrayList<>()).add(entry);
+            }
+            found.add(new Declaration(className, supertypes, location(getCurrentPath()), methods));
+            super.visitClass(t, found);
+            qualifiedName.remove(qualifiedName.size() - 1);
+            return null;
+        }
+
+        private Location location(TreePath path) {
+            var range = Parser.range(parse.task, parse.contents, path);
+            return new Location(parse.root.getSourceFile().toUri(), range);
+        }
+
+        /** Resolve a name in an `extends` or `implements` clause to a qualified class name */
+        private String resolve(Tree type) {
+            if (type instanceof ParameterizedTypeTree) {
+                type = ((ParameterizedTypeTree) type).getType();
+            }
+            if (type instanceof AnnotatedTypeTree) {
+                type = ((AnnotatedTypeTree) type).getUnderlyingType();
+            }
+            var name = type.toString();
+            // Outer.Inner is resolved by resolving Outer
+            var dot = name.indexOf('.');
+            var first = dot == -1 ? name : name.substring(0, dot);
+            var rest = dot == -1 ? "" : name.substring(dot);
+            // Already qualified
+            if (!first.isEmpty() && Character.isLowerCase(first.charAt(0))) return name;
+            // Declared in this file, innermost scope first
+            for (var depth = qualifiedName.size(); depth >= 0; depth--) {
+                var outer = String.join(".", qualifiedName.subList(0, depth));
+                var candidate = qualify(outer.isEmpty() ? first : outer + "." + first);
+                if (declared.contains(candidate)) return candidate + rest;
+            }
+            // import a.b.First;
+            for (var i : imports) {
+                if (i.endsWith("." + first)) return i + rest;
+            }
+            // Same package
+            var samePackage = qualify(first);
+            if (compiler.findTypeDeclaration(samePackage) != CompilerProvider.NOT_FOUND) {
+                return samePackage + rest;
+            }
+            // import a.b.*;
+            for (var i : imports) {
+                if (!i.endsWith(".*")) continue;
+                var candidate = i.substring(0, i.length() - 1) + first;
+                if (compiler.findTypeDeclaration(candidate) != CompilerProvider.NOT_FOUND
+                        || compiler.jdkClasses.contains(candidate)
+                        || compiler.classPathClasses.contains(candidate)) {
+                    return candidate + rest;
+                }
+            }
+            if (compiler.jdkClasses.contains("java.lang." + first)) return "java.lang." + first + rest;
+            // Give up and assume it's in the same package
+            return samePackage + rest;
+        }
+
+        private String qualify(String relativeName) {
+            return packageName.isEmpty() ? relativeName : packageName + "." + relativeName;
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -0,0 +1,218 @@
+package org.javacs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.logging.Logger;
+import org.javacs.lsp.Diagnostic;
+import org.javacs.lsp.PublishDiagnosticsParams;
+
+/**
+ * WorkspaceLint checks every file in the workspace in the background, a few files at a time, while the user is idle.
+ * Open files go first, then files that changed outside the editor, then files that depend on an API that changed, and
+ * then everything else. Checking pauses while the machine is busy or the heap is nearly full.
+ *
+ * <p>The diagnostics of each file are saved to the user's cache directory, so after a restart only the files that
+ * changed in the meantime are checked again.
+ */
+class WorkspaceLint {
+    static final int OPEN = 0, CHANGED = 1, DEPENDENT = 2, OTHER = 3;
+    private static final int BATCH_SIZE = 10;
+    private static final double MAX_LOAD_PER_CPU = 0.75, MAX_HEAP_USED = 0.75;
+
+    private static class Checked {
+        /** Modified time of the version of the file that was checked */
+        long modified;
+        List<Diagnostic> diagnostics;
+    }
+
+    private static class Saved {
+        Map<String, Checked> files;
+    }
+
+    private final CacheFile saveFile;
+    private Map<Path, Checked> checked;
+    private boolean dirty;
+    /** queues[p] holds the files waiting to be checked with priority p, in the order they were queued */
+    private final List<Set<Path>> queues = new ArrayList<>();
+    private final Map<Path, Integer> priority = new HashMap<>();
+    /** Files queued and checked since the queue was last empty, for reporting progress */
+    private int queued, done;
+    private boolean throttled;
+
+    WorkspaceLint(Set<Path> workspaceRoots) {
+        this.saveFile = new CacheFile("lint", workspaceRoots);
+        for (var p = OPEN; p <= OTHER; p++) {
+            queues.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Queue every workspace file that hasn't been checked since it last changed, and return the saved diagnostics of
+     * the files that have.
+     */
+    List<PublishDiagnosticsParams> start() {
+        load();
+        var all = new HashSet<Path>(FileStore.all());
+        dirty |= checked.keySet().retainAll(all);
+        var upToDate = new ArrayList<PublishDiagnosticsParams>();
+        for (var file : all) {
+            var c = checked.get(file);
+            if (c != null && isFresh(file, c)) {
+                var params = new PublishDiagnosticsParams();
+                params.uri = file.toUri();
+                params.diagnostics.addAll(c.diagnostics);
+                upToDate.add(params);
+            } else {
+                enqueue(file, FileStore.activeDocuments().contains(file) ? OPEN : OTHER);
+            }
+        }
+        LOG.info(String.format("...%d files are up-to-date, %d need to be checked", upToDate.size(), priority.size()));
+        return upToDate;
+    }
+
+    /** Check `file` with `level` priority, unless it's already waiting with the same or a higher priority */
+    void enqueue(Path file, int level) {
+        var current = priority.get(file);
+        if (current != null && current <= level) return;
+        if (current != null) {
+            queues.get(current).remove(file);
+        } else {
+            queued++;
+        }
+        queues.get(level).add(file);
+        priority.put(file, level);
+    }
+
+    boolean hasWork() {
+        return !priority.isEmpty();
+    }
+
+    /**
+     * The next files to check, all with the same priority. Returns nothing if the machine is too busy right now. The
+     * files stay in the queue until they are recorded or skipped.
+     */
+    Path[] next() {
+        if (overBudget()) return new Path[0];
+        for (var queue : queues) {
+            if (queue.isEmpty()) continue;
+            var batch = new ArrayList<Path>();
+            for (var file : queue) {
+                if (batch.size() == BATCH_SIZE) break;
+                batch.add(file);
+            }
+            return batch.toArray(Path[]::new);
+        }
+        return new Path[0];
+    }
+
+    /** Remember the diagnostics of a file that was just compiled, and take it out of the queue */
+    void record(PublishDiagnosticsParams errs) {
+        if (!errs.uri.getScheme().equals("file")) return;
+        var file = Paths.get(errs.uri);
+        var modified = FileStore.modified(file);
+        if (modified == null) return;
+        load();
+        var c = new Checked();
+        c.modified = modified.toEpochMilli();
+        c.diagnostics = List.copyOf(errs.diagnostics);
+        checked.put(file, c);
+        dirty = true;
+        dequeue(file);
+    }
+
+    /** Take files that couldn't be checked out of the queue, so they don't block the rest */
+    void skip(Path[] files) {
+        for (var f : files) {
+            dequeue(f);
+        }
+    }
+
+    void forget(Path file) {
+        load();
+        if (checked.remove(file) != null) dirty = true;
+        dequeue(file);
+    }
+
+    /** Percent of the files queued since the queue was last empty that have been checked */
+    int percentDone() {
+        if (queued == 0) return 100;
+        return 100 * done / queued;
+    }
+
+    private void dequeue(Path file) {
+        var current = priority.remove(file);
+        if (current == null) return;
+        queues.get(current).remove(file);
+        done++;
+        if (priority.isEmpty()) {
+            queued = 0;
+            done = 0;
+        }
+    }
+
+    private boolean isFresh(Path file, Checked c) {
+        var modified = FileStore.modified(file);
+        return modified != null && modified.toEpochMilli() == c.modified;
+    }
+
+    /** Is the system load or the heap over the budget for background work? */
+    private boolean overBudget() {
+        var load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        var cpus = Runtime.getRuntime().availableProcessors();
+        var heapUsed = heapUsedAfterGc();
+        // getSystemLoadAverage() is negative on platforms that don't support it
+        var over = load / cpus > MAX_LOAD_PER_CPU || heapUsed > MAX_HEAP_USED;
+        if (over != throttled) {
+            var state = over ? "Pause" : "Resume";
+            var message = "%s workspace check, load is %.2f and %.0f%% of heap is used";
+            LOG.info(String.format(message, state, load, heapUsed * 100));
+            throttled = over;
+        }
+        return over;
+    }
+
+    /** Fraction of the heap that was still in use after the last garbage collection, ignoring garbage */
+    private static double heapUsedAfterGc() {
+        long used = 0;
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) continue;
+            var usage = pool.getCollectionUsage();
+            if (usage != null) used += usage.getUsed();
+        }
+        return (double) used / Runtime.getRuntime().maxMemory();
+    }
+
+    private void load() {
+        if (checked != null) return;
+        checked = new HashMap<>();
+        var saved = saveFile.load(Saved.class);
+        // Nothing has been checked yet, or the diagnostics couldn't be read
+        if (saved == null || saved.files == null) return;
+        for (var f : saved.files.keySet()) {
+            checked.put(Paths.get(f), saved.files.get(f));
+        }
+        LOG.info(String.format("...loaded diagnostics of %d files from %s", checked.size(), saveFile.file));
+    }
+
+    /** Write the diagnostics to disk, if they have changed since they were loaded */
+    void save() {
+        if (!dirty) return;
+        var started = Instant.now();
+        var saved = new Saved();
+        saved.files = new HashMap<>();
+        for (var f : checked.keySet()) {
+            saved.files.put(f.toString(), checked.get(f));
+        }
+        if (!saveFile.save(saved)) return;
+        dirty = false;
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(String.format("...saved diagnostics of %d files in %d ms", checked.size(), elapsed));
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -1,5 +1,6 @@
 package org.javacs.action;
 
+import com.google.gson.JsonPrimitive;
 import com.sun.source.tree.*;
 import com.sun.source.util.*;
 import java.io.IOException;
@@ -30,9 +31,7 @@ public class CodeActionProvider {
                         params.textDocument.uri.getPath(), params.range.start.line + 1));
         var started = Instant.now();
         var file = Paths.get(params.textDocument.uri);
-        // TODO this get-map / convert-to-CodeAction split is an ugly workaround of the fact that we need a new compile
-        // task to generate the code actions
-        // If we switch to resolving code actions asynchronously using Command, that will fix this problem.
+        listing(file);
         var rewrites = new TreeMap<String, Rewrite>();
         try (var task = compiler.compile(file)) {
             var elapsed = Duration.between(started, Instant.now()).toMillis();
@@ -107,6 +106,7 @@ public class CodeActionProvider {
         LOG.info(String.format("Check %d diagnostics for quick fixes...", params.context.diagnostics.size()));
         var started = Instant.now();
         var file = Paths.get(params.textDocument.uri);
+        listing(file);
         try (var task = compiler.compile(file)) {
             var actions = new ArrayList<CodeAction>();
             for (var d : params.context.diagnostics) {
@@ -120,7 +120,6 @@ public class CodeActionProvider {
     }
 
     private List<CodeAction> codeActionForDiagnostic(CompileTask task, Path file, Diagnostic d) {
-        // TODO this should be done asynchronously using executeCommand
         switch (d.code) {
             case "unused_local":
                 var toStatement = new ConvertVariableToStatement(file, findPosition(task, d.range.start));
@@ -304,19 +303,105 @@ public class CodeActionProvider {
         return contents.subSequence(start, end);
     }
 
+    /**
+     * List a quick fix without running `rewrite`, which may compile other files. The edits are computed by resolve(_)
+     * if the user picks the action.
+     */
     private List<CodeAction> createQuickFix(String title, Rewrite rewrite) {
-        var edits = rewrite.rewrite(compiler);
-        if (edits == Rewrite.CANCELLED) {
-            return List.of();
+        var id = Integer.toString(nextId++);
+        synchronized (unresolved) {
+            unresolved.put(id, new Pending(listingFile, FileStore.version(listingFile), rewrite));
         }
         var a = new CodeAction();
         a.kind = CodeActionKind.QuickFix;
         a.title = title;
-        a.edit = new WorkspaceEdit();
+        a.data = new JsonPrimitive(id);
+        return List.of(a);
+    }
+
+    /** The rewrite of a listed action, and the version of the file it was listed for */
+    private static class Pending {
+        final Path file;
+        final int version;
+        final Rewrite rewrite;
+
+        Pending(Path file, int version, Rewrite rewrite) {
+            this.file = file;
+            this.version = version;
+            this.rewrite = rewrite;
+        }
+
+        boolean isCurrent() {
+            return FileStore.version(file) == version;
+        }
+    }
+
+    private static final int MAX_PENDING = 100;
+
+    /**
+     * Rewrites of recently listed actions, by the id in CodeAction.data. Clients list actions again whenever the cursor
+     * moves or diagnostics are published, while an older list may still be on screen, so each list doesn't replace the
+     * last one. Instead, the least recently listed actions are dropped, along with actions for old versions of a file.
+     */
+    private static final Map<String, Pending> unresolved =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Pending> eldest) {
+                    return size() > MAX_PENDING;
+                }
+            };
+
+    private static int nextId;
+
+    /** The file whose actions are being listed */
+    private Path listingFile;
+
+    private void listing(Path file) {
+        listingFile = file;
+        synchronized (unresolved) {
+            unresolved.values().removeIf(p -> p.file.equals(file) && !p.isCurrent());
+        }
+    }
+
+    /** Was `action` listed for an older version of its file, or forgotten since it was listed? */
+    public static boolean isOutOfDate(CodeAction action) {
+        if (action.data == null || !action.data.isJsonPrimitive()) return false;
+        Pending pending;
+        synchronized (unresolved) {
+            pending = unresolved.get(action.data.getAsString());
+        }
+        return pending == null || !pending.isCurrent();
+    }
+
+    /**
+     * Compute the edits of a listed action. Returns it without edits if it was listed for an older version of its file,
+     * or was forgotten, or doesn't apply anymore.
+     */
+    public CodeAction resolve(CodeAction action) {
+        if (action.data == null || !action.data.isJsonPrimitive()) return action;
+        Pending pending;
+        synchronized (unresolved) {
+            pending = unresolved.get(action.data.getAsString());
+        }
+        if (pending == null || !pending.isCurrent()) {
+            LOG.warning(String.format("Action `%s` is out of date", action.title));
+            return action;
+        }
+        var rewrite = pending.rewrite;
+        LOG.info(String.format("Resolve action `%s`...", action.title));
+        var started = Instant.now();
+        var edits = rewrite.rewrite(compiler);
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        if (edits == Rewrite.CANCELLED) {
+            LOG.info(String.format("...action doesn't apply anymore, checked in %d ms", elapsed));
+            return action;
+        }
+        action.edit = new WorkspaceEdit();
         for (var file : edits.keySet()) {
-            a.edit.changes.put(file.toUri(), List.of(edits.get(file)));
+            action.edit.changes.put(file.toUri(), List.of(edits.get(file)));
         }
-        return List.of(a);
+        LOG.info(String.format("...edited %d files in %d ms", edits.size(), elapsed));
+        return action;
     }
 
     private static final Logger LOG = Logger.getLogger("main");
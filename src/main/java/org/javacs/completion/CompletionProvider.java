@@ -129,7 +129,7 @@ public class CompletionProvider {
         var contents = new PruneMethodBodies(task.task).scan(task.root, cursor);
         var endOfLine = endOfLine(contents, (int) cursor);
         contents.insert(endOfLine, ';');
-        var list = compileAndComplete(file, contents.toString(), cursor);
+        var list = compileAndComplete(file, contents, cursor);
         addTopLevelSnippets(task, list);
         logCompletionTiming(started, list.items, list.isIncomplete);
         return list;
@@ -144,9 +144,9 @@ public class CompletionProvider {
         return cursor;
     }
 
-    private CompletionList compileAndComplete(Path file, String contents, long cursor) {
+    private CompletionList compileAndComplete(Path file, PrunedSource contents, long cursor) {
         var started = Instant.now();
-        var source = new SourceFileObject(file, contents, Instant.now()); //为了能够动态代码编译存在内存中的修改后的java文件内容
+        var source = new SourceFileObject(file, contents.toCharBuffer(), Instant.now()); //为了能够动态代码编译存在内存中的修改后的java文件内容
         var partial = partialIdentifier(contents, (int) cursor);  //从字符串的指定位置向前提取一个合法的 Java 标识符片段
         var endsWithParen = endsWithParen(contents, (int) cursor); //判断用户是否正在输入方法调用（如输入 obj.method 后提示参数列表）
         try (var task = compiler.compile(List.of(source))) {
@@ -201,15 +201,15 @@ public class CompletionProvider {
         return snippetItem("class " + name, "class " + name + " {\n    $0\n}");
     }
 
-    private String partialIdentifier(String contents, int end) {
+    private String partialIdentifier(CharSequence contents, int end) {
         var start = end;
         while (start > 0 && Character.isJavaIdentifierPart(contents.charAt(start - 1))) {
             start--;
         }
-        return contents.substring(start, end);
+        return contents.subSequence(start, end).toString();
     }
 
-    private boolean endsWithParen(String contents, int cursor) {
+    private boolean endsWithParen(CharSequence contents, int cursor) {
         for (var i = cursor; i < contents.length(); i++) {
             if (!Character.isJavaIdentifierPart(contents.charAt(i))) {
                 // 遇到第一个非标识符字符时，检查是否是 '('
@@ -219,12 +219,12 @@ public class CompletionProvider {
         return false;
     }
 
-    private String qualifiedPartialIdentifier(String contents, int end) {
+    private String qualifiedPartialIdentifier(CharSequence contents, int end) {
         var start = end;
         while (start > 0 && isQualifiedIdentifierChar(contents.charAt(start - 1))) {
             start--;
         }
-        return contents.substring(start, end);
+        return contents.subSequence(start, end).toString();
     }
 
     private boolean isQualifiedIdentifierChar(char c) {
@@ -7,9 +7,9 @@ import com.sun.source.util.TreeScanner;
 import com.sun.source.util.Trees;
 import java.io.IOException;
 
-public class PruneMethodBodies extends TreeScanner<StringBuilder, Long> {
+public class PruneMethodBodies extends TreeScanner<PrunedSource, Long> {
     private final JavacTask task;
-    private final StringBuilder buf = new StringBuilder();
+    private PrunedSource pruned;
     private CompilationUnitTree root;
 
     public PruneMethodBodies(JavacTask task) {
@@ -17,39 +17,33 @@ public class PruneMethodBodies extends TreeScanner<StringBuilder, Long> {
     }
 
     @Override
-    public StringBuilder visitCompilationUnit(CompilationUnitTree t, Long find) {
+    public PrunedSource visitCompilationUnit(CompilationUnitTree t, Long find) {
         root = t;
         try {
-            var contents = t.getSourceFile().getCharContent(true);
-            buf.setLength(0);
-            buf.append(contents);
+            pruned = new PrunedSource(t.getSourceFile().getCharContent(true));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
         super.visitCompilationUnit(t, find);
-        return buf;
+        return pruned;
     }
 
     @Override
-    public StringBuilder visitMethod(MethodTree t, Long find) {
+    public PrunedSource visitMethod(MethodTree t, Long find) {
         var pos = Trees.instance(task).getSourcePositions();
-        if (t.getBody() == null) return buf;
+        if (t.getBody() == null) return pruned;
         var start = pos.getStartPosition(root, t.getBody());
         var end = pos.getEndPosition(root, t.getBody());
         if (!(start <= find && find < end)) {
-            for (var i = (int) start + 1; i < end - 1; i++) {
-                if (!Character.isWhitespace(buf.charAt(i))) {
-                    buf.setCharAt(i, ' ');
-                }
-            }
-            return buf;
+            pruned.erase((int) start + 1, (int) end - 1);
+            return pruned;
         }
         super.visitMethod(t, find);
-        return buf;
+        return pruned;
     }
 
     @Override
-    public StringBuilder reduce(StringBuilder a, StringBuilder b) {
-        return buf;
+    public PrunedSource reduce(PrunedSource a, PrunedSource b) {
+        return pruned;
     }
 }
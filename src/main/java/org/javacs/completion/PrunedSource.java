@@ -0,0 +1,118 @@
+package org.javacs.completion;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * A view of the contents of a file with some ranges blanked out, and optionally one extra character inserted. Blanked
+ * ranges keep their line breaks and other whitespace, so positions in the pruned text match positions in the original
+ * text up to the inserted character. Nothing is copied until the text is handed to javac.
+ */
+public class PrunedSource implements CharSequence {
+    private final CharSequence contents;
+    /** Blanked ranges [starts[i], ends[i]), sorted by start and non-overlapping */
+    private int[] starts = new int[16], ends = new int[16];
+    private int count;
+    private int insertAt = -1;
+    private char inserted;
+
+    PrunedSource(CharSequence contents) {
+        this.contents = contents;
+    }
+
+    /** Blank out every non-whitespace character in [start, end) */
+    void erase(int start, int end) {
+        if (start >= end) return;
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        // Ranges almost always arrive in order, so this is usually a no-op
+        var i = count;
+        while (i > 0 && starts[i - 1] > start) {
+            starts[i] = starts[i - 1];
+            ends[i] = ends[i - 1];
+            i--;
+        }
+        starts[i] = start;
+        ends[i] = end;
+        count++;
+    }
+
+    /** Insert `c` before the character at position `at` of the original contents */
+    void insert(int at, char c) {
+        if (insertAt != -1) throw new IllegalStateException("Already inserted at " + insertAt);
+        insertAt = at;
+        inserted = c;
+    }
+
+    private boolean isErased(int i) {
+        var found = Arrays.binarySearch(starts, 0, count, i);
+        if (found >= 0) return true;
+        var before = -found - 2;
+        return before >= 0 && i < ends[before];
+    }
+
+    @Override
+    public int length() {
+        if (insertAt == -1) return contents.length();
+        return contents.length() + 1;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (insertAt != -1) {
+            if (index == insertAt) return inserted;
+            if (index > insertAt) index--;
+        }
+        var c = contents.charAt(index);
+        if (!Character.isWhitespace(c) && isErased(index)) return ' ';
+        return c;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        var result = new StringBuilder(end - start);
+        for (var i = start; i < end; i++) {
+            result.append(charAt(i));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Copy the pruned text into a single array. javac reads a CharBuffer's backing array directly, so this is the only
+     * copy made when the pruned file is compiled.
+     */
+    public CharBuffer toCharBuffer() {
+        var length = contents.length();
+        var chars = new char[length()];
+        var tail = insertAt == -1 ? length : insertAt;
+        copy(0, tail, chars, 0);
+        if (insertAt != -1) {
+            chars[insertAt] = inserted;
+            copy(insertAt, length, chars, insertAt + 1);
+        }
+        return CharBuffer.wrap(chars);
+    }
+
+    private void copy(int from, int to, char[] dest, int destPos) {
+        if (contents instanceof String) {
+            ((String) contents).getChars(from, to, dest, destPos);
+        } else {
+            for (var i = from; i < to; i++) dest[destPos + i - from] = contents.charAt(i);
+        }
+        for (var r = 0; r < count; r++) {
+            var start = Math.max(starts[r], from);
+            var end = Math.min(ends[r], to);
+            for (var i = start; i < end; i++) {
+                var j = destPos + i - from;
+                if (!Character.isWhitespace(dest[j])) dest[j] = ' ';
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toCharBuffer().toString();
+    }
+}
@@ -6,6 +6,7 @@ import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
 import com.sun.source.util.DocTrees;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
@@ -14,6 +15,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.StringJoiner;
 import java.util.function.Predicate;
+import java.util.logging.Logger;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
@@ -22,6 +24,7 @@ import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.*;
 import org.javacs.CompileTask;
 import org.javacs.CompilerProvider;
+import org.javacs.FileStore;
 import org.javacs.FindHelper;
 import org.javacs.MarkdownHelper;
 import org.javacs.hover.ShortTypePrinter;
@@ -40,6 +43,9 @@ public class SignatureProvider {
     }
 
     public SignatureHelp signatureHelp(Path file, int line, int column) {
+        var contents = FileStore.contents(file);
+        var reuse = reuseLastInvocation(file, contents, FileStore.offset(contents, line, column));
+        if (reuse != null) return reuse;
         // TODO prune
         try (var task = compiler.compile(file)) {
             var cursor = task.root().getLineMap().getPosition(line, column);
@@ -57,7 +63,9 @@ public class SignatureProvider {
                 }
                 var activeSignature = activeSignature(task, path, invoke.getArguments(), overloads);
                 var activeParameter = activeParameter(task, invoke.getArguments(), cursor);
-                return new SignatureHelp(signatures, activeSignature, activeParameter);
+                var help = new SignatureHelp(signatures, activeSignature, activeParameter);
+                rememberInvocation(task, file, contents, invoke.getMethodSelect(), help);
+                return help;
             }
             if (path.getLeaf() instanceof NewClassTree) {
                 var invoke = (NewClassTree) path.getLeaf();
@@ -71,12 +79,94 @@ public class SignatureProvider {
                 }
                 var activeSignature = activeSignature(task, path, invoke.getArguments(), overloads);
                 var activeParameter = activeParameter(task, invoke.getArguments(), cursor);
-                return new SignatureHelp(signatures, activeSignature, activeParameter);
+                var help = new SignatureHelp(signatures, activeSignature, activeParameter);
+                rememberInvocation(task, file, contents, invoke.getIdentifier(), help);
+                return help;
             }
             return NOT_SUPPORTED;
         }
     }
 
+    /**
+     * The last invocation we compiled. While the text up to and including its `(` is unchanged and the cursor is still
+     * inside its argument list, typing `,` only moves the active parameter, so we don't need to compile again.
+     */
+    private static Path cachedFile;
+    private static String cachedPrefix;
+    private static SignatureHelp cachedHelp;
+
+    private void rememberInvocation(CompileTask task, Path file, String contents, Tree callee, SignatureHelp help) {
+        var pos = Trees.instance(task.task).getSourcePositions();
+        var open = (int) pos.getEndPosition(task.root(), callee);
+        while (open != -1 && open < contents.length() && contents.charAt(open) != '(') open++;
+        if (open == -1 || open >= contents.length()) {
+            cachedFile = null;
+            return;
+        }
+        cachedFile = file;
+        cachedPrefix = contents.substring(0, open + 1);
+        cachedHelp = help;
+    }
+
+    private SignatureHelp reuseLastInvocation(Path file, String contents, int cursor) {
+        if (!file.equals(cachedFile)) return null;
+        if (cursor < cachedPrefix.length() || !contents.startsWith(cachedPrefix)) return null;
+        var activeParameter = countArguments(contents, cachedPrefix.length(), cursor);
+        if (activeParameter == -1 || cachedHelp.signatures.isEmpty()) return null;
+        LOG.info("...reusing signature help of last invocation");
+        var activeSignature = cachedHelp.activeSignature;
+        if (activeParameter >= cachedHelp.signatures.get(activeSignature).parameters.size()) {
+            for (var i = 0; i < cachedHelp.signatures.size(); i++) {
+                if (activeParameter < cachedHelp.signatures.get(i).parameters.size()) {
+                    activeSignature = i;
+                    break;
+                }
+            }
+        }
+        return new SignatureHelp(cachedHelp.signatures, activeSignature, activeParameter);
+    }
+
+    /**
+     * Count the top-level commas between `start` and `cursor`. Returns -1 if the cursor has left the argument list, or if
+     * the arguments contain something we can't count without parsing, like generic type arguments or comments.
+     */
+    private static int countArguments(String contents, int start, int cursor) {
+        var depth = 0;
+        var commas = 0;
+        for (var i = start; i < cursor; i++) {
+            switch (contents.charAt(i)) {
+                case '(':
+                case '[':
+                case '{':
+                    depth++;
+                    break;
+                case ')':
+                case ']':
+                case '}':
+                    if (depth == 0) return -1;
+                    depth--;
+                    break;
+                case ',':
+                    if (depth == 0) commas++;
+                    break;
+                case '"':
+                case '\'':
+                    // Skip string and char literals, which may contain commas
+                    var quote = contents.charAt(i);
+                    for (i++; i < cursor && contents.charAt(i) != quote; i++) {
+                        if (contents.charAt(i) == '\\') i++;
+                    }
+                    break;
+                case '<':
+                case '/':
+                    return -1;
+            }
+        }
+        // If the cursor is inside a nested invocation, that is the invocation we should describe
+        if (depth != 0) return -1;
+        return commas;
+    }
+
     private List<ExecutableElement> methodOverloads(CompileTask task, MethodInvocationTree method) {
         if (method.getMethodSelect() instanceof IdentifierTree) {
             var id = (IdentifierTree) method.getMethodSelect();
@@ -270,4 +360,6 @@ public class SignatureProvider {
         }
         return true;
     }
+
+    private static final Logger LOG = Logger.getLogger("main");
 }
@@ -8,6 +8,8 @@ class FindHoverElement extends TreePathScanner<Element, Long> {
 
     private final JavacTask task;
     private CompilationUnitTree root;
+    /** Range of the identifier that refers to the element we found */
+    long foundStart = -1, foundEnd = -1;
 
     FindHoverElement(JavacTask task) {
         this.task = task;
@@ -25,6 +27,8 @@ class FindHoverElement extends TreePathScanner<Element, Long> {
         var start = pos.getStartPosition(root, t);
         var end = pos.getEndPosition(root, t);
         if (start <= find && find < end) {
+            foundStart = start;
+            foundEnd = end;
             return Trees.instance(task).getElement(getCurrentPath());
         }
         return super.visitIdentifier(t, find);
@@ -36,6 +40,8 @@ class FindHoverElement extends TreePathScanner<Element, Long> {
         var start = pos.getEndPosition(root, t.getExpression()) + 1;
         var end = pos.getEndPosition(root, t);
         if (start <= find && find < end) {
+            foundStart = start;
+            foundEnd = end;
             return Trees.instance(task).getElement(getCurrentPath());
         }
         return super.visitMemberSelect(t, find);
@@ -47,6 +53,8 @@ class FindHoverElement extends TreePathScanner<Element, Long> {
         var start = pos.getStartPosition(root, t.getQualifierExpression()) + 2;
         var end = pos.getEndPosition(root, t);
         if (start <= find && find < end) {
+            foundStart = start;
+            foundEnd = end;
             return Trees.instance(task).getElement(getCurrentPath());
         }
         return super.visitMemberReference(t, find);
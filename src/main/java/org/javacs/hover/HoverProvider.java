@@ -5,19 +5,28 @@ import com.sun.source.tree.*;
 import com.sun.source.util.*;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.StringJoiner;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import javax.lang.model.element.*;
 import org.javacs.CompileTask;
 import org.javacs.CompilerProvider;
 import org.javacs.CompletionData;
+import org.javacs.DocStore;
+import org.javacs.FileStore;
 import org.javacs.FindHelper;
 import org.javacs.JsonHelper;
 import org.javacs.MarkdownHelper;
 import org.javacs.ParseTask;
 import org.javacs.lsp.CompletionItem;
 import org.javacs.lsp.MarkedString;
+import org.javacs.lsp.MarkupContent;
+import org.javacs.lsp.MarkupKind;
 
 public class HoverProvider {
     final CompilerProvider compiler;
@@ -29,55 +38,210 @@ public class HoverProvider {
     }
 
     public List<MarkedString> hover(Path file, int line, int column) {
+        var version = FileStore.version(file);
+        var offset = FileStore.offset(FileStore.contents(file), line, column);
+        var cached = cachedHover(file, version, offset);
+        if (cached != null) return cached;
         try (var task = compiler.compile(file)) {
             var position = task.root().getLineMap().getPosition(line, column);
-            var element = new FindHoverElement(task.task).scan(task.root(), position);
+            var find = new FindHoverElement(task.task);
+            var element = find.scan(task.root(), position);
             if (element == null) return NOT_SUPPORTED;
-            var list = new ArrayList<MarkedString>();
-            var code = printType(element);
-            list.add(new MarkedString("java", code));
-            var docs = docs(task, element);
-            if (!docs.isEmpty()) {
-                list.add(new MarkedString(docs));
+            var list = describe(task, element);
+            if (expiresWithFile(task, element)) {
+                rememberHover(file, version, find.foundStart, find.foundEnd, list);
             }
             return list;
         }
     }
 
+    private static class CachedHover {
+        final long start, end;
+        final List<MarkedString> hover;
+
+        CachedHover(long start, long end, List<MarkedString> hover) {
+            this.start = start;
+            this.end = end;
+            this.hover = hover;
+        }
+    }
+
+    private static class FileHovers {
+        final int version;
+        final List<CachedHover> hovers = new ArrayList<>();
+
+        FileHovers(int version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * Hovers of identifiers in each open file, which expire when the file is edited. Only hovers of elements declared
+     * in the same file or in a jar are kept, because an edit to another workspace file doesn't expire them.
+     */
+    private static final Map<Path, FileHovers> hoversByFile = new HashMap<>();
+
+    private static final int MAX_HOVERS_PER_FILE = 1000;
+
+    private List<MarkedString> cachedHover(Path file, int version, long offset) {
+        var hovers = hoversByFile.get(file);
+        if (hovers == null) return null;
+        if (hovers.version != version) {
+            hoversByFile.remove(file);
+            return null;
+        }
+        for (var h : hovers.hovers) {
+            if (h.start <= offset && offset < h.end) {
+                LOG.info("...using cached hover");
+                return h.hover;
+            }
+        }
+        return null;
+    }
+
+    private void rememberHover(Path file, int version, long start, long end, List<MarkedString> hover) {
+        // Closed files don't have a version, so we can't tell when they change
+        if (version == -1 || start == -1 || end == -1) return;
+        var hovers = hoversByFile.get(file);
+        if (hovers == null || hovers.version != version) {
+            hovers = new FileHovers(version);
+            hoversByFile.put(file, hovers);
+        }
+        if (hovers.hovers.size() >= MAX_HOVERS_PER_FILE) {
+            hovers.hovers.clear();
+        }
+        hovers.hovers.add(new CachedHover(start, end, hover));
+    }
+
+    /**
+     * Rendered type and docs of elements declared in jars, by signature. Elements declared in the workspace aren't
+     * cached here because their declarations can change in any file.
+     */
+    private static final Map<String, List<MarkedString>> hoversBySignature =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<MarkedString>> eldest) {
+                    return size() > MAX_HOVERS_BY_SIGNATURE;
+                }
+            };
+
+    private static final int MAX_HOVERS_BY_SIGNATURE = 10_000;
+
+    private List<MarkedString> describe(CompileTask task, Element element) {
+        var signature = signature(task, element);
+        if (signature != null && hoversBySignature.containsKey(signature)) {
+            return hoversBySignature.get(signature);
+        }
+        var list = new ArrayList<MarkedString>();
+        var code = printType(element);
+        list.add(new MarkedString("java", code));
+        var docs = docs(task, element);
+        if (!docs.isEmpty()) {
+            list.add(new MarkedString(docs));
+        }
+        if (signature != null && isDeclaredInJar(element)) {
+            hoversBySignature.put(signature, list);
+        }
+        return list;
+    }
+
+    private String signature(CompileTask task, Element element) {
+        if (element instanceof TypeElement) {
+            var type = (TypeElement) element;
+            return DocStore.signature(type.getQualifiedName().toString(), null, null);
+        } else if (element.getKind() == ElementKind.FIELD) {
+            var type = (TypeElement) element.getEnclosingElement();
+            var className = type.getQualifiedName().toString();
+            return DocStore.signature(className, element.getSimpleName().toString(), null);
+        } else if (element instanceof ExecutableElement) {
+            var method = (ExecutableElement) element;
+            var type = (TypeElement) method.getEnclosingElement();
+            var className = type.getQualifiedName().toString();
+            var erasedParameterTypes = FindHelper.erasedParameterTypes(task, method);
+            return DocStore.signature(className, method.getSimpleName().toString(), erasedParameterTypes);
+        } else {
+            return null;
+        }
+    }
+
+    /** Is `element` declared in the file that `task` compiled, or in a jar, so no other edit changes its hover? */
+    private boolean expiresWithFile(CompileTask task, Element element) {
+        var path = Trees.instance(task.task).getPath(element);
+        if (path != null) return path.getCompilationUnit() == task.root();
+        // Classes in jars have no source tree in this compilation
+        var type = element;
+        while (type != null && !(type instanceof TypeElement)) {
+            type = type.getEnclosingElement();
+        }
+        return type != null && isDeclaredInJar(type);
+    }
+
+    private boolean isDeclaredInJar(Element element) {
+        var type = element instanceof TypeElement ? element : element.getEnclosingElement();
+        var className = ((TypeElement) type).getQualifiedName().toString();
+        var file = compiler.findAnywhere(className);
+        return file.isPresent() && DocStore.canStore(file.get());
+    }
+
     public void resolveCompletionItem(CompletionItem item) {
         if (item.data == null || item.data == JsonNull.INSTANCE) return;
         var data = JsonHelper.GSON.fromJson(item.data, CompletionData.class);
         var source = compiler.findAnywhere(data.className);
         if (source.isEmpty()) return;
-        var task = compiler.parse(source.get());
-        var tree = findItem(task, data);
-        resolveDetail(item, data, tree);
-        var path = Trees.instance(task.task).getPath(task.root, tree);
-        var docTree = DocTrees.instance(task.task).getDocCommentTree(path);
-        if (docTree == null) return;
-        item.documentation = MarkdownHelper.asMarkupContent(docTree);
+        var signature = DocStore.signature(data.className, data.memberName, data.erasedParameterTypes);
+        var canStore = DocStore.canStore(source.get());
+        var store = compiler.docStore();
+        var cachedDetail = canStore ? store.get(DETAIL + signature) : Optional.<String>empty();
+        var cachedDocs = canStore ? store.get(signature) : Optional.<String>empty();
+        String detail, docs;
+        if (cachedDetail.isPresent() && cachedDocs.isPresent()) {
+            detail = cachedDetail.get();
+            docs = cachedDocs.get();
+        } else {
+            var task = compiler.parse(source.get());
+            var tree = findItem(task, data);
+            detail = detail(tree);
+            docs = docs(task, tree);
+            if (canStore) {
+                store.put(DETAIL + signature, detail);
+                store.put(signature, docs);
+            }
+        }
+        if (!detail.isEmpty()) {
+            item.detail = detail;
+            if (data.plusOverloads != 0) {
+                item.detail += " (+" + data.plusOverloads + " overloads)";
+            }
+        }
+        if (docs.isEmpty()) return;
+        var content = new MarkupContent();
+        content.kind = MarkupKind.Markdown;
+        content.value = docs;
+        item.documentation = content;
     }
 
+    /** Key prefix of the completion detail of a signature in the doc store */
+    private static final String DETAIL = "detail ";
+
     // TODO consider showing actual source code instead of just types and names
-    private void resolveDetail(CompletionItem item, CompletionData data, Tree tree) {
+    private String detail(Tree tree) {
         if (tree instanceof MethodTree) {
             var method = (MethodTree) tree;
             var parameters = new StringJoiner(", ");
             for (var p : method.getParameters()) {
                 parameters.add(p.getType() + " " + p.getName());
             }
-            item.detail = method.getReturnType() + " " + method.getName() + "(" + parameters + ")";
+            var detail = method.getReturnType() + " " + method.getName() + "(" + parameters + ")";
             if (!method.getThrows().isEmpty()) {
                 var exceptions = new StringJoiner(", ");
                 for (var e : method.getThrows()) {
                     exceptions.add(e.toString());
                 }
-                item.detail += " throws " + exceptions;
-            }
-            if (data.plusOverloads != 0) {
-                item.detail += " (+" + data.plusOverloads + " overloads)";
+                detail += " throws " + exceptions;
             }
+            return detail;
         }
+        return "";
     }
 
     private Tree findItem(ParseTask task, CompletionData data) {
@@ -97,36 +261,46 @@ public class HoverProvider {
         if (element instanceof TypeElement) {
             var type = (TypeElement) element;
             var className = type.getQualifiedName().toString();
-            var file = compiler.findAnywhere(className);
-            if (file.isEmpty()) return "";
-            var parse = compiler.parse(file.get());
-            var tree = FindHelper.findType(parse, className);
-            return docs(parse, tree);
+            return docs(className, null, null, parse -> FindHelper.findType(parse, className));
         } else if (element.getKind() == ElementKind.FIELD) {
             var field = (VariableElement) element;
             var type = (TypeElement) field.getEnclosingElement();
             var className = type.getQualifiedName().toString();
-            var file = compiler.findAnywhere(className);
-            if (file.isEmpty()) return "";
-            var parse = compiler.parse(file.get());
-            var tree = FindHelper.findField(parse, className, field.getSimpleName().toString());
-            return docs(parse, tree);
+            var fieldName = field.getSimpleName().toString();
+            return docs(className, fieldName, null, parse -> FindHelper.findField(parse, className, fieldName));
         } else if (element instanceof ExecutableElement) {
             var method = (ExecutableElement) element;
             var type = (TypeElement) method.getEnclosingElement();
             var className = type.getQualifiedName().toString();
             var methodName = method.getSimpleName().toString();
             var erasedParameterTypes = FindHelper.erasedParameterTypes(task, method);
-            var file = compiler.findAnywhere(className);
-            if (file.isEmpty()) return "";
-            var parse = compiler.parse(file.get());
-            var tree = FindHelper.findMethod(parse, className, methodName, erasedParameterTypes);
-            return docs(parse, tree);
+            return docs(
+                    className,
+                    methodName,
+                    erasedParameterTypes,
+                    parse -> FindHelper.findMethod(parse, className, methodName, erasedParameterTypes));
         } else {
             return "";
         }
     }
 
+    private String docs(
+            String className, String memberName, String[] erasedParameterTypes, Function<ParseTask, Tree> find) {
+        var file = compiler.findAnywhere(className);
+        if (file.isEmpty()) return "";
+        if (!DocStore.canStore(file.get())) {
+            var parse = compiler.parse(file.get());
+            return docs(parse, find.apply(parse));
+        }
+        var signature = DocStore.signature(className, memberName, erasedParameterTypes);
+        var cached = compiler.docStore().get(signature);
+        if (cached.isPresent()) return cached.get();
+        var parse = compiler.parse(file.get());
+        var docs = docs(parse, find.apply(parse));
+        compiler.docStore().put(signature, docs);
+        return docs;
+    }
+
     private String docs(ParseTask task, Tree tree) {
         var path = Trees.instance(task.task).getPath(task.root, tree);
         var docTree = DocTrees.instance(task.task).getDocCommentTree(path);
@@ -83,7 +83,7 @@ class FindSymbolsMatching extends TreePathScanner<Void, List<SymbolInformation>>
         return null;
     }
 
-    private static Integer asSymbolKind(Tree.Kind k) {
+    static Integer asSymbolKind(Tree.Kind k) {
         switch (k) {
             case ANNOTATION_TYPE:
             case CLASS:
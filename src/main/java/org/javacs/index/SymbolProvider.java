@@ -3,9 +3,13 @@ package org.javacs.index;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import org.javacs.CompilerProvider;
+import org.javacs.Outline;
 import org.javacs.ParseTask;
+import org.javacs.lsp.Location;
 import org.javacs.lsp.SymbolInformation;
 
 public class SymbolProvider {
@@ -17,11 +21,24 @@ public class SymbolProvider {
     }
 
     public List<SymbolInformation> findSymbols(String query, int limit) {
+        return findSymbols(query, limit, __ -> {}, () -> false);
+    }
+
+    /**
+     * Find symbols matching `query`, passing the symbols in each file to `partial` as soon as the file is parsed. If
+     * `cancelled` becomes true, stop and return the symbols found so far.
+     */
+    public List<SymbolInformation> findSymbols(
+            String query, int limit, Consumer<List<SymbolInformation>> partial, BooleanSupplier cancelled) {
         LOG.info(String.format("Searching for `%s`...", query));
         var result = new ArrayList<SymbolInformation>();
         var checked = 0;
         var parsed = 0;
         for (var file : compiler.search(query)) {
+            if (cancelled.getAsBoolean()) {
+                LOG.info(String.format("...cancelled after finding %d symbols", result.size()));
+                break;
+            }
             checked++;
             // Parse the file and check class members for matches
             LOG.info(String.format("...%s contains text matches", file.getFileName()));
@@ -31,6 +48,7 @@ public class SymbolProvider {
             // If we confirm matches, add them to the results
             if (symbols.size() > 0) {
                 LOG.info(String.format("...found %d occurrences", symbols.size()));
+                partial.accept(symbols);
             }
             result.addAll(symbols);
             // If results are full, stop
@@ -41,8 +59,19 @@ public class SymbolProvider {
     }
 
     public List<SymbolInformation> documentSymbols(Path file) {
-        var task = compiler.parse(file);
-        return findSymbolsMatching(task, "");
+        var outline = Outline.of(file);
+        var result = new ArrayList<SymbolInformation>();
+        for (var d : outline.declarations) {
+            // Anonymous classes have no name to show
+            if (d.name.isEmpty()) continue;
+            var info = new SymbolInformation();
+            info.name = d.name;
+            info.kind = FindSymbolsMatching.asSymbolKind(d.kind);
+            info.location = new Location(outline.uri, d.range);
+            info.containerName = d.containerName;
+            result.add(info);
+        }
+        return result;
     }
 
     private List<SymbolInformation> findSymbolsMatching(ParseTask task, String query) {
@@ -1,15 +1,156 @@
 package org.javacs.lens;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.sun.source.tree.Tree;
+import java.net.URI;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import org.javacs.ParseTask;
+import org.javacs.CompilerProvider;
+import org.javacs.FileStore;
+import org.javacs.Outline;
+import org.javacs.TypeHierarchy;
 import org.javacs.lsp.CodeLens;
+import org.javacs.lsp.Command;
+import org.javacs.lsp.Position;
+import org.javacs.navigation.ReferenceCounts;
 
 public class CodeLensProvider {
 
-    public static List<CodeLens> find(ParseTask task) {
+    /**
+     * The lenses of the declarations in `outline`. Reference counts are only shown if `countReferences`, because they
+     * need a reference index that covers the whole workspace.
+     */
+    public static List<CodeLens> find(Outline outline, boolean countReferences) {
         var list = new ArrayList<CodeLens>();
-        new FindCodeLenses(task.task).scan(task.root, list);
+        for (var d : outline.declarations) {
+            if (countReferences && d.kind != Tree.Kind.VARIABLE && !d.name.isEmpty()) {
+                list.add(unresolvedReferences(outline, d));
+            }
+            if (d.isAbstract) {
+                list.add(unresolvedImplementations(outline, d));
+            }
+            if (d.kind == Tree.Kind.METHOD) {
+                if (d.isTest) {
+                    list.add(runTest(outline, d));
+                    list.add(debugTest(outline, d));
+                }
+                continue;
+            }
+            if (d.isTest) {
+                list.add(runAllTests(outline, d));
+            }
+        }
         return list;
     }
+
+    /** A lens that shows how many references there are to `d`, once it's resolved */
+    private static CodeLens unresolvedReferences(Outline outline, Outline.Declaration d) {
+        var data = new JsonArray();
+        data.add(outline.uri.toString());
+        data.add(d.nameStart.line);
+        data.add(d.nameStart.character);
+        return new CodeLens(d.range, null, data);
+    }
+
+    /**
+     * A lens that shows how many workspace classes implement `d`, an interface, abstract class or abstract method, once
+     * it's resolved. The data holds the arguments of java.command.findImplementations, then the class name, and for a
+     * method, its key and parameter types.
+     */
+    private static CodeLens unresolvedImplementations(Outline outline, Outline.Declaration d) {
+        var data = new JsonArray();
+        data.add(outline.uri.toString());
+        data.add(d.nameStart.line);
+        data.add(d.nameStart.character);
+        // Outline starts className with the package, which is empty in the default package
+        data.add(d.className.startsWith(".") ? d.className.substring(1) : d.className);
+        if (d.kind == Tree.Kind.METHOD) {
+            data.add(TypeHierarchy.methodKey(d.name, d.parameterTypes.size()));
+            var parameterTypes = new JsonArray();
+            for (var t : d.parameterTypes) {
+                parameterTypes.add(t);
+            }
+            data.add(parameterTypes);
+        }
+        return new CodeLens(d.range, null, data);
+    }
+
+    /**
+     * Count the references of a lens made by unresolvedReferences(_), using counts cached for each file version, or the
+     * implementations of a lens made by unresolvedImplementations(_), using the parse-based type hierarchy
+     */
+    public static CodeLens resolve(CompilerProvider compiler, CodeLens lens) {
+        var data = lens.data.getAsJsonArray();
+        if (data.size() > 3) return resolveImplementations(compiler, lens);
+        var uri = URI.create(data.get(0).getAsString());
+        var position = new Position(data.get(1).getAsInt(), data.get(2).getAsInt());
+        var count = ReferenceCounts.count(compiler, Paths.get(uri), position);
+        String title;
+        if (count == -1) {
+            title = "Find references";
+        } else if (count == 1) {
+            title = "1 reference";
+        } else {
+            title = count + " references";
+        }
+        lens.command = new Command(title, "java.command.findReferences", data);
+        return lens;
+    }
+
+    private static CodeLens runAllTests(Outline outline, Outline.Declaration d) {
+        var arguments = new JsonArray();
+        arguments.add(outline.uri.toString());
+        arguments.add(d.className);
+        arguments.add(JsonNull.INSTANCE);
+        var command = new Command("Run All Tests", "java.command.test.run", arguments);
+        return new CodeLens(d.range, command, null);
+    }
+
+    private static CodeLens runTest(Outline outline, Outline.Declaration d) {
+        var arguments = new JsonArray();
+        arguments.add(outline.uri.toString());
+        arguments.add(d.className);
+        arguments.add(d.name);
+        var command = new Command("Run Test", "java.command.test.run", arguments);
+        return new CodeLens(d.range, command, null);
+    }
+
+    private static CodeLens debugTest(Outline outline, Outline.Declaration d) {
+        var arguments = new JsonArray();
+        arguments.add(outline.uri.toString());
+        arguments.add(d.className);
+        arguments.add(d.name);
+        var sourceRoots = new JsonArray();
+        for (var dir : FileStore.sourceRoots()) {
+            sourceRoots.add(dir.toString());
+        }
+        arguments.add(sourceRoots);
+        var command = new Command("Debug Test", "java.command.test.debug", arguments);
+        return new CodeLens(d.range, command, null);
+    }
+
+    private static CodeLens resolveImplementations(CompilerProvider compiler, CodeLens lens) {
+        var data = lens.data.getAsJsonArray();
+        var className = data.get(3).getAsString();
+        var methodKey = data.size() > 4 ? data.get(4).getAsString() : null;
+        var parameterTypes = new ArrayList<String>();
+        if (data.size() > 5) {
+            for (var t : data.get(5).getAsJsonArray()) {
+                parameterTypes.add(t.getAsString());
+            }
+        }
+        var count = 0;
+        for (var subtype : compiler.typeHierarchy().subtypes(className)) {
+            if (methodKey == null || !subtype.overrides(methodKey, parameterTypes).isEmpty()) count++;
+        }
+        var title = count == 1 ? "1 implementation" : count + " implementations";
+        var arguments = new JsonArray();
+        for (var i = 0; i < 3; i++) {
+            arguments.add(data.get(i));
+        }
+        lens.command = new Command(title, "java.command.findImplementations", arguments);
+        return lens;
+    }
 }
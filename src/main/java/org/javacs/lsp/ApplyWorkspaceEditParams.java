@@ -0,0 +1,13 @@
+package org.javacs.lsp;
+
+public class ApplyWorkspaceEditParams {
+    public String label;
+    public WorkspaceEdit edit;
+
+    public ApplyWorkspaceEditParams() {}
+
+    public ApplyWorkspaceEditParams(String label, WorkspaceEdit edit) {
+        this.label = label;
+        this.edit = edit;
+    }
+}
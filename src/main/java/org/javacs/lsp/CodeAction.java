@@ -1,5 +1,6 @@
 package org.javacs.lsp;
 
+import com.google.gson.JsonElement;
 import java.util.List;
 
 public class CodeAction {
@@ -7,5 +8,7 @@ public class CodeAction {
     public List<Diagnostic> diagnostics;
     public WorkspaceEdit edit;
     public Command command;
+    /** Passed back to the server by codeAction/resolve, to compute `edit` */
+    public JsonElement data;
     public static CodeAction NONE;
 }
@@ -0,0 +1,8 @@
+package org.javacs.lsp;
+
+import com.google.gson.JsonArray;
+
+public class ExecuteCommandParams {
+    public String command;
+    public JsonArray arguments;
+}
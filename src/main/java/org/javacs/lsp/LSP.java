@@ -10,6 +10,7 @@ import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -167,17 +168,37 @@ public class LSP {
             writeClient(send, messageText);
         }
 
+        @Override
+        public void applyEdit(ApplyWorkspaceEditParams params) {
+            var jsonText = toJson(params);
+            var requestMethod = "workspace/applyEdit";
+            var id = new Random().nextInt();
+            var messageText =
+                    String.format(
+                            "{\"jsonrpc\":\"2.0\",\"id\":\"%d\",\"method\":\"%s\",\"params\":%s}",
+                            id, requestMethod, jsonText);
+            writeClient(send, messageText);
+        }
+
         @Override
         public void customNotification(String method, JsonElement params) {
             notifyClient(send, method, params);
         }
+
+        @Override
+        public void progress(ProgressParams params) {
+            notifyClient(send, "$/progress", params);
+        }
     }
 
     public static void connect(
             Function<LanguageClient, LanguageServer> serverFactory, InputStream receive, OutputStream send) {
         var server = serverFactory.apply(new RealClient(send));
         var pending = new ArrayBlockingQueue<Message>(10);
+        server.watchQueue(() -> !pending.isEmpty());
         var endOfStream = new Message();
+        // The id of the request that the main thread is processing, so the reader can tell the server it was cancelled
+        var running = new AtomicReference<Integer>();
 
         // Read messages and process cancellations on a separate thread
         class MessageReader implements Runnable {
@@ -185,8 +206,19 @@ public class LSP {
                 if ("$/cancelRequest".equals(message.method)) {
                     var params = gson.fromJson(message.params, CancelParams.class);
                     var removed = pending.removeIf(r -> r.id != null && r.id.equals(params.id));
-                    if (removed) LOG.info(String.format("Cancelled request %d, which had not yet started", params.id));
-                    else LOG.info(String.format("Cannot cancel request %d because it has already started", params.id));
+                    // Read once, because the main thread can finish the request and clear it between two reads
+                    var runningId = running.get();
+                    if (removed) {
+                        LOG.info(String.format("Cancelled request %d, which had not yet started", params.id));
+                    } else if (runningId != null && runningId == params.id) {
+                        LOG.info(String.format("Cancelled request %d, which is running", params.id));
+                        server.requestCancelled();
+                    } else {
+                        LOG.info(String.format("Cannot cancel request %d because it has already finished", params.id));
+                    }
+                }
+                if ("textDocument/didChange".equals(message.method)) {
+                    server.editReceived();
                 }
             }
 
@@ -244,13 +276,15 @@ public class LSP {
             // If poll(_) failed, loop again
             if (r == null) {
                 if (hasAsyncWork) {
-                    server.doAsyncWork();
-                    hasAsyncWork = false;
+                    hasAsyncWork = server.doAsyncWork();
                 }
                 continue;
             }
+            // Responses to requests we sent, like workspace/applyEdit, need no answer
+            if (r.method == null) continue;
             // Otherwise, process the new message
             hasAsyncWork = true;
+            running.set(r.id);
             try {
                 LOG.info("#LSP.connect# receive:" + gson.toJson(r));
                 switch (r.method) {
@@ -381,6 +415,13 @@ public class LSP {
                             respond(send, r.id, response);
                             break;
                         }
+                    case "textDocument/implementation":
+                        {
+                            var params = gson.fromJson(r.params, TextDocumentPositionParams.class);
+                            var response = server.gotoImplementation(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
                     case "textDocument/references":
                         {
                             var params = gson.fromJson(r.params, ReferenceParams.class);
@@ -416,6 +457,20 @@ public class LSP {
                             respond(send, r.id, response);
                             break;
                         }
+                    case "codeAction/resolve":
+                        {
+                            var params = gson.fromJson(r.params, CodeAction.class);
+                            var response = server.resolveCodeAction(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "workspace/executeCommand":
+                        {
+                            var params = gson.fromJson(r.params, ExecuteCommandParams.class);
+                            server.executeCommand(params);
+                            respond(send, r.id, null);
+                            break;
+                        }
                     case "textDocument/codeLens":
                         {
                             var params = gson.fromJson(r.params, CodeLensParams.class);
@@ -458,6 +513,27 @@ public class LSP {
                             respond(send, r.id, response);
                             break;
                         }
+                    case "textDocument/semanticTokens/full":
+                        {
+                            var params = gson.fromJson(r.params, SemanticTokensParams.class);
+                            var response = server.semanticTokensFull(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "textDocument/semanticTokens/full/delta":
+                        {
+                            var params = gson.fromJson(r.params, SemanticTokensDeltaParams.class);
+                            var response = server.semanticTokensFullDelta(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "textDocument/semanticTokens/range":
+                        {
+                            var params = gson.fromJson(r.params, SemanticTokensRangeParams.class);
+                            var response = server.semanticTokensRange(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
                     case "$/cancelRequest":
                         // Already handled in peek(message)
                         break;
@@ -469,6 +545,8 @@ public class LSP {
                 if (r.id != null) {
                     error(send, r.id, new ResponseError(ErrorCodes.InternalError, e.getMessage(), null));
                 }
+            } finally {
+                running.set(null);
             }
         }
     }
@@ -10,4 +10,8 @@ public interface LanguageClient {
     void registerCapability(String method, JsonElement options);
 
     void customNotification(String method, JsonElement params);
+
+    void progress(ProgressParams params);
+
+    void applyEdit(ApplyWorkspaceEditParams params);
 }
@@ -3,6 +3,7 @@ package org.javacs.lsp;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
 public class LanguageServer {
     public InitializeResult initialize(InitializeParams params) {
@@ -69,6 +70,10 @@ public class LanguageServer {
         throw new RuntimeException("Unimplemented");
     }
 
+    public Optional<List<Location>> gotoImplementation(TextDocumentPositionParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
     public Optional<List<Location>> findReferences(ReferenceParams params) throws IOException {
         throw new RuntimeException("Unimplemented");
     }
@@ -85,6 +90,14 @@ public class LanguageServer {
         throw new RuntimeException("Unimplemented");
     }
 
+    public CodeAction resolveCodeAction(CodeAction params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public void executeCommand(ExecuteCommandParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
     public List<CodeLens> codeLens(CodeLensParams params) {
         throw new RuntimeException("Unimplemented");
     }
@@ -113,9 +126,46 @@ public class LanguageServer {
         throw new RuntimeException("Unimplemented");
     }
 
+    public SemanticTokens semanticTokensFull(SemanticTokensParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    /** Returns SemanticTokensDelta, or SemanticTokens if the server no longer has the client's previous result */
+    public Object semanticTokensFullDelta(SemanticTokensDeltaParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public SemanticTokens semanticTokensRange(SemanticTokensRangeParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
     public List<DocumentLink> documentLink(DocumentLinkParams params) {
         throw new RuntimeException("Unimplemented");
     }
 
-    public void doAsyncWork() {}
+    /**
+     * Called when the client has been quiet for a while after sending a message. Returns true if there is still work to
+     * do, in which case doAsyncWork will be called again the next time the client is quiet.
+     */
+    public boolean doAsyncWork() {
+        return false;
+    }
+
+    /** Called on the reader thread as soon as a didChange notification arrives, before it is processed. */
+    public void editReceived() {}
+
+    /** Called on the reader thread when the client cancels the request that is currently running. */
+    public void requestCancelled() {}
+
+    private BooleanSupplier messagesWaiting = () -> false;
+
+    /** Called by LSP.connect with a check for messages that have arrived but haven't been processed yet. */
+    public void watchQueue(BooleanSupplier messagesWaiting) {
+        this.messagesWaiting = messagesWaiting;
+    }
+
+    /** Are there messages waiting behind the current one? Background work should give up so they can run. */
+    protected boolean messagesWaiting() {
+        return messagesWaiting.getAsBoolean();
+    }
 }
@@ -0,0 +1,14 @@
+package org.javacs.lsp;
+
+public class SemanticTokens {
+    public String resultId;
+    /** Groups of 5 ints: deltaLine, deltaStartChar, length, tokenType, tokenModifiers */
+    public int[] data;
+
+    public SemanticTokens() {}
+
+    public SemanticTokens(String resultId, int[] data) {
+        this.resultId = resultId;
+        this.data = data;
+    }
+}
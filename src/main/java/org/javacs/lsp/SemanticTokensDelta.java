@@ -0,0 +1,15 @@
+package org.javacs.lsp;
+
+import java.util.List;
+
+public class SemanticTokensDelta {
+    public String resultId;
+    public List<SemanticTokensEdit> edits;
+
+    public SemanticTokensDelta() {}
+
+    public SemanticTokensDelta(String resultId, List<SemanticTokensEdit> edits) {
+        this.resultId = resultId;
+        this.edits = edits;
+    }
+}
@@ -0,0 +1,7 @@
+package org.javacs.lsp;
+
+public class SemanticTokensDeltaParams {
+    public TextDocumentIdentifier textDocument;
+    /** The result id of the tokens the client already has */
+    public String previousResultId;
+}
@@ -0,0 +1,14 @@
+package org.javacs.lsp;
+
+public class SemanticTokensEdit {
+    public int start, deleteCount;
+    public int[] data;
+
+    public SemanticTokensEdit() {}
+
+    public SemanticTokensEdit(int start, int deleteCount, int[] data) {
+        this.start = start;
+        this.deleteCount = deleteCount;
+        this.data = data;
+    }
+}
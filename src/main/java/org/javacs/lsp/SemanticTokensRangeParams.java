@@ -0,0 +1,6 @@
+package org.javacs.lsp;
+
+public class SemanticTokensRangeParams {
+    public TextDocumentIdentifier textDocument;
+    public Range range;
+}
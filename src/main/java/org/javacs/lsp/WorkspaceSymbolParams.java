@@ -1,7 +1,10 @@
 package org.javacs.lsp;
 
+import com.google.gson.JsonElement;
+
 public class WorkspaceSymbolParams {
     public String query;
+    public JsonElement partialResultToken;
 
     public WorkspaceSymbolParams() {}
 
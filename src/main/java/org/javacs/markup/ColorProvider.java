@@ -1,23 +1,94 @@
 package org.javacs.markup;
 
+import com.sun.source.tree.LineMap;
+import com.sun.source.util.Trees;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import org.javacs.CompileTask;
+import org.javacs.FileStore;
+import org.javacs.lsp.Range;
 
 public class ColorProvider {
 
     final CompileTask task;
+    private final SemanticColors[] colors;
+    /** Which roots to color; the rest are skipped */
+    private final boolean[] wanted;
+    private boolean scanned;
 
     public ColorProvider(CompileTask task) {
-        this.task = task;
+        this(task, null);
     }
 
-    public SemanticColors[] colors() {
-        var colors = new SemanticColors[task.roots.size()];
+    /** Only color the roots in `files`, or every root if `files` is null */
+    public ColorProvider(CompileTask task, Set<Path> files) {
+        this.task = task;
+        this.colors = new SemanticColors[task.roots.size()];
+        this.wanted = new boolean[task.roots.size()];
         for (int i = 0; i < task.roots.size(); i++) {
-            var root = task.roots.get(i);
             colors[i] = new SemanticColors();
-            colors[i].uri = root.getSourceFile().toUri();
-            new Colorizer(task.task).scan(root, colors[i]);
+            colors[i].uri = task.roots.get(i).getSourceFile().toUri();
+            wanted[i] = files == null || files.contains(Paths.get(colors[i].uri));
+        }
+    }
+
+    /** The colors of each wanted root */
+    public List<SemanticColors> colors() {
+        if (!scanned) {
+            var scanner = new FusedScanner();
+            for (int i = 0; i < task.roots.size(); i++) {
+                if (!wanted[i]) continue;
+                scanner.register("colors", colorizer(i));
+                scanner.scan(task.roots.get(i));
+            }
+        }
+        var result = new ArrayList<SemanticColors>();
+        for (int i = 0; i < colors.length; i++) {
+            if (wanted[i]) result.add(colors[i]);
         }
-        return colors;
+        return result;
+    }
+
+    /**
+     * The colors of the part of `uri` that overlaps `range`, without looking at the rest of the file, so the lines on
+     * screen can be colored right away in a huge file.
+     */
+    public SemanticColors colors(URI uri, Range range) {
+        var result = new SemanticColors();
+        result.uri = uri;
+        var file = Paths.get(uri);
+        for (var root : task.roots) {
+            // Compare paths, because the client may encode `uri` differently than toUri()
+            if (!Paths.get(root.getSourceFile().toUri()).equals(file)) continue;
+            var lines = root.getLineMap();
+            var contents = FileStore.contents(file);
+            var from = lineStart(lines, contents, range.start.line);
+            var to = lineStart(lines, contents, range.end.line + 1);
+            var scanner = new FusedScanner();
+            scanner.register("colors", new Colorizer(task.task, result));
+            scanner.restrict(Trees.instance(task.task).getSourcePositions(), from, to);
+            scanner.scan(root);
+        }
+        return result;
+    }
+
+    /** The offset of the start of zero-based `line`, or the end of the file if there is no such line */
+    private static long lineStart(LineMap lines, String contents, int line) {
+        if (line + 1 > lines.getLineNumber(contents.length())) return contents.length();
+        return lines.getStartPosition(line + 1);
+    }
+
+    boolean wants(int i) {
+        return wanted[i];
+    }
+
+    /** The analysis that finds the colors of `task.roots[i]`, so another pass over the same tree can find them */
+    FusedScanner.Analysis colorizer(int i) {
+        scanned = true;
+        return new Colorizer(task.task, colors[i]);
     }
 }
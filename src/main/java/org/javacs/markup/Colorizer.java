@@ -7,18 +7,32 @@ import javax.lang.model.element.*;
 import org.javacs.FileStore;
 import org.javacs.lsp.Range;
 
-class Colorizer extends TreePathScanner<Void, SemanticColors> {
+class Colorizer implements FusedScanner.Analysis {
     private final Trees trees;
+    private final SemanticColors colors;
+    private String contents;
 
-    Colorizer(JavacTask task) {
-        trees = Trees.instance(task);
+    Colorizer(JavacTask task, SemanticColors colors) {
+        this.trees = Trees.instance(task);
+        this.colors = colors;
     }
 
-    private void maybeField(Name name, SemanticColors colors) {
+    @Override
+    public void enter(TreePath path) {
+        var leaf = path.getLeaf();
+        if (leaf instanceof IdentifierTree) {
+            maybeField(path, ((IdentifierTree) leaf).getName());
+        } else if (leaf instanceof MemberSelectTree) {
+            maybeField(path, ((MemberSelectTree) leaf).getIdentifier());
+        } else if (leaf instanceof VariableTree) {
+            maybeField(path, ((VariableTree) leaf).getName());
+        }
+    }
+
+    private void maybeField(TreePath fromPath, Name name) {
         if (name.contentEquals("this") || name.contentEquals("super") || name.contentEquals("class")) {
             return;
         }
-        var fromPath = getCurrentPath();
         var toEl = trees.getElement(fromPath);
         if (toEl == null) {
             return;
@@ -56,29 +70,12 @@ class Colorizer extends TreePathScanner<Void, SemanticColors> {
             return Range.NONE;
         }
         // Find name inside expression
-        var file = Paths.get(root.getSourceFile().toUri());
-        var contents = FileStore.contents(file);
+        if (contents == null) {
+            contents = FileStore.contents(Paths.get(root.getSourceFile().toUri()));
+        }
         var region = contents.substring(start, end);
         start += region.indexOf(name.toString());
         end = start + name.length();
         return RangeHelper.range(root, start, end);
     }
-
-    @Override
-    public Void visitIdentifier(IdentifierTree t, SemanticColors colors) {
-        maybeField(t.getName(), colors);
-        return super.visitIdentifier(t, colors);
-    }
-
-    @Override
-    public Void visitMemberSelect(MemberSelectTree t, SemanticColors colors) {
-        maybeField(t.getIdentifier(), colors);
-        return super.visitMemberSelect(t, colors);
-    }
-
-    @Override
-    public Void visitVariable(VariableTree t, SemanticColors colors) {
-        maybeField(t.getName(), colors);
-        return super.visitVariable(t, colors);
-    }
 }
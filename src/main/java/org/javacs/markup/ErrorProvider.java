@@ -2,66 +2,107 @@ package org.javacs.markup;
 
 import com.sun.source.tree.*;
 import com.sun.source.util.*;
-import java.nio.file.Paths;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.logging.Logger;
 import javax.lang.model.element.Element;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 import org.javacs.CompileTask;
-import org.javacs.FileStore;
+import org.javacs.FindHelper;
 import org.javacs.lsp.*;
 
 public class ErrorProvider {
     final CompileTask task;
+    /** If set, the colors of each file are found during the same pass over the tree as the warnings */
+    private final ColorProvider colors;
 
     public ErrorProvider(CompileTask task) {
+        this(task, null);
+    }
+
+    public ErrorProvider(CompileTask task, ColorProvider colors) {
         this.task = task;
+        this.colors = colors;
     }
 
     public PublishDiagnosticsParams[] errors() {
+        var scanner = new FusedScanner();
+        var started = System.nanoTime();
+        var byFile = compilerErrorsByFile();
+        scanner.addTime("compiler errors", System.nanoTime() - started);
         var result = new PublishDiagnosticsParams[task.roots.size()];
         for (var i = 0; i < task.roots.size(); i++) {
             var root = task.roots.get(i);
             result[i] = new PublishDiagnosticsParams();
             result[i].uri = root.getSourceFile().toUri();
-            result[i].diagnostics.addAll(compilerErrors(root));
+            started = System.nanoTime();
+            result[i].diagnostics.addAll(compilerErrors(root, byFile.getOrDefault(result[i].uri, List.of())));
+            scanner.addTime("compiler errors", System.nanoTime() - started);
+            started = System.nanoTime();
             result[i].diagnostics.addAll(unusedWarnings(root));
-            result[i].diagnostics.addAll(notThrownWarnings(root));
+            scanner.addTime("unused", System.nanoTime() - started);
+            var notThrown = new HashMap<TreePath, String>();
+            scanner.register("not thrown", new WarnNotThrown(task.task, notThrown));
+            if (colors != null && colors.wants(i)) {
+                scanner.register("colors", colors.colorizer(i));
+            }
+            scanner.scan(root);
+            for (var location : notThrown.keySet()) {
+                result[i].diagnostics.add(warnNotThrown(notThrown.get(location), location));
+            }
         }
+        scanner.logTimings();
         // TODO hint fields that could be final
 
         return result;
     }
 
-    private List<org.javacs.lsp.Diagnostic> compilerErrors(CompilationUnitTree root) {
-        var result = new ArrayList<org.javacs.lsp.Diagnostic>();
+    /** Group the compiler's diagnostics by file, so each file doesn't have to look through all of them */
+    private Map<URI, List<javax.tools.Diagnostic<? extends JavaFileObject>>> compilerErrorsByFile() {
+        var byFile = new HashMap<URI, List<javax.tools.Diagnostic<? extends JavaFileObject>>>();
         for (var d : task.diagnostics) {
-            if (d.getSource() == null || !d.getSource().toUri().equals(root.getSourceFile().toUri())) continue;
+            if (d.getSource() == null) continue;
             if (d.getStartPosition() == -1 || d.getEndPosition() == -1) continue;
-            result.add(lspDiagnostic(d, root.getLineMap()));
+            byFile.computeIfAbsent(d.getSource().toUri(), __ -> new ArrayList<>()).add(d);
         }
-        return result;
+        return byFile;
     }
 
-    private List<org.javacs.lsp.Diagnostic> unusedWarnings(CompilationUnitTree root) {
+    /** Nobody reads past the first hundred errors in a file, so the rest aren't converted or sent */
+    private static final int MAX_ERRORS_PER_FILE = 100;
+
+    /** Convert the first MAX_ERRORS_PER_FILE of `diagnostics`, errors first, rendering only their messages */
+    private List<org.javacs.lsp.Diagnostic> compilerErrors(
+            CompilationUnitTree root, List<javax.tools.Diagnostic<? extends JavaFileObject>> diagnostics) {
         var result = new ArrayList<org.javacs.lsp.Diagnostic>();
-        var warnUnused = new WarnUnused(task.task);
-        warnUnused.scan(root, null);
-        for (var unusedEl : warnUnused.notUsed()) {
-            result.add(warnUnused(unusedEl));
+        var lines = root.getLineMap();
+        for (var d : diagnostics) {
+            if (result.size() == MAX_ERRORS_PER_FILE) break;
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                result.add(lspDiagnostic(d, lines));
+            }
+        }
+        for (var d : diagnostics) {
+            if (result.size() == MAX_ERRORS_PER_FILE) break;
+            if (d.getKind() != Diagnostic.Kind.ERROR) {
+                result.add(lspDiagnostic(d, lines));
+            }
+        }
+        if (diagnostics.size() > result.size()) {
+            var file = root.getSourceFile().getName();
+            LOG.info(String.format("...showing %d of %d diagnostics in %s", result.size(), diagnostics.size(), file));
         }
         return result;
     }
 
-    private List<org.javacs.lsp.Diagnostic> notThrownWarnings(CompilationUnitTree root) {
+    private List<org.javacs.lsp.Diagnostic> unusedWarnings(CompilationUnitTree root) {
         var result = new ArrayList<org.javacs.lsp.Diagnostic>();
-        var notThrown = new HashMap<TreePath, String>();
-        new WarnNotThrown(task.task).scan(root, notThrown);
-        for (var location : notThrown.keySet()) {
-            result.add(warnNotThrown(notThrown.get(location), location));
+        for (var unusedEl : IncrementalUnused.notUsed(task.task, root)) {
+            result.add(warnUnused(unusedEl));
         }
         return result;
     }
@@ -75,8 +116,13 @@ public class ErrorProvider {
         var end = d.getEndPosition();
         var startLine = (int) lines.getLineNumber(start);
         var startColumn = (int) lines.getColumnNumber(start);
-        var endLine = (int) lines.getLineNumber(end);
-        var endColumn = (int) lines.getColumnNumber(end);
+        var endLine = startLine;
+        var endColumn = startColumn;
+        // Many diagnostics, like missing semicolons, are empty ranges
+        if (end != start) {
+            endLine = (int) lines.getLineNumber(end);
+            endColumn = (int) lines.getColumnNumber(end);
+        }
         var severity = severity(d.getKind());
         var code = d.getCode();
         var message = d.getMessage(null);
@@ -137,16 +183,13 @@ public class ErrorProvider {
                 start = offset;
             }
         }
-        var file = Paths.get(root.getSourceFile().toUri());
-        var contents = FileStore.contents(file);
         var name = unusedEl.getSimpleName();
         if (name.contentEquals("<init>")) {
             name = unusedEl.getEnclosingElement().getSimpleName();
         }
-        var region = contents.subSequence(start, end == Diagnostic.NOPOS ? contents.length() : end);
-        var matcher = Pattern.compile("\\b" + name + "\\b").matcher(region);
-        if (matcher.find()) {
-            start += matcher.start();
+        var offset = FindHelper.findNameIn(root, name, start, end == Diagnostic.NOPOS ? Integer.MAX_VALUE : end);
+        if (offset != -1) {
+            start = offset;
             end = start + name.length();
         }
         var message = String.format("'%s' is not used", name);
@@ -190,4 +233,6 @@ public class ErrorProvider {
         result.range = RangeHelper.range(root, start, end);
         return result;
     }
+
+    private static final Logger LOG = Logger.getLogger("main");
 }
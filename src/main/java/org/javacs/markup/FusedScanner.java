@@ -0,0 +1,115 @@
+package org.javacs.markup;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.logging.Logger;
+import javax.tools.Diagnostic;
+
+/**
+ * FusedScanner walks each compilation unit once and calls every registered analysis at each node, instead of each
+ * analysis walking the tree on its own. It adds up how long each analysis spends, so a slow one can be found in the
+ * log.
+ */
+class FusedScanner extends TreeScanner<Void, Void> {
+    /** An analysis that runs as part of a FusedScanner pass */
+    interface Analysis {
+        /** Called before the children of `path.getLeaf()` are scanned */
+        void enter(TreePath path);
+
+        /** Called after the children of `path.getLeaf()` are scanned */
+        default void exit(TreePath path) {}
+    }
+
+    private final List<Analysis> analyses = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    /** Nanoseconds spent in each analysis, across every compilation unit scanned so far */
+    private final Map<String, Long> nanos = new LinkedHashMap<>();
+    private long[] spent = new long[0];
+    private TreePath path;
+    /** If set, the next scan skips subtrees that end before `from` or start after `to` */
+    private SourcePositions pos;
+    private long from, to;
+
+    /** Run `analysis` during the next call to scan(root) */
+    void register(String name, Analysis analysis) {
+        names.add(name);
+        analyses.add(analysis);
+    }
+
+    /** Only scan the parts of the next compilation unit that overlap the characters from `from` to `to` */
+    void restrict(SourcePositions pos, long from, long to) {
+        this.pos = pos;
+        this.from = from;
+        this.to = to;
+    }
+
+    /** Scan `root` with every registered analysis, then unregister them */
+    void scan(CompilationUnitTree root) {
+        spent = new long[analyses.size()];
+        try {
+            scan(root, null);
+        } finally {
+            for (var i = 0; i < names.size(); i++) {
+                addTime(names.get(i), spent[i]);
+            }
+            analyses.clear();
+            names.clear();
+            pos = null;
+        }
+    }
+
+    /** Count `elapsed` nanoseconds spent outside the scanner towards `name` */
+    void addTime(String name, long elapsed) {
+        nanos.merge(name, elapsed, Long::sum);
+    }
+
+    void logTimings() {
+        var join = new StringJoiner(", ");
+        for (var name : nanos.keySet()) {
+            join.add(String.format("%s %d ms", name, nanos.get(name) / 1_000_000));
+        }
+        LOG.info("...analyses took " + join);
+    }
+
+    @Override
+    public Void scan(Tree tree, Void __) {
+        if (tree == null) return null;
+        if (pos != null && path != null && outside(tree)) return null;
+        var prev = path;
+        path = prev == null ? new TreePath((CompilationUnitTree) tree) : new TreePath(prev, tree);
+        try {
+            for (var i = 0; i < analyses.size(); i++) {
+                var started = System.nanoTime();
+                analyses.get(i).enter(path);
+                spent[i] += System.nanoTime() - started;
+            }
+            tree.accept(this, null);
+            for (var i = analyses.size() - 1; i >= 0; i--) {
+                var started = System.nanoTime();
+                analyses.get(i).exit(path);
+                spent[i] += System.nanoTime() - started;
+            }
+        } finally {
+            path = prev;
+        }
+        return null;
+    }
+
+    private boolean outside(Tree tree) {
+        var root = path.getCompilationUnit();
+        var start = pos.getStartPosition(root, tree);
+        var end = pos.getEndPosition(root, tree);
+        if (end != Diagnostic.NOPOS && end < from) return true;
+        return start != Diagnostic.NOPOS && start > to;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -0,0 +1,321 @@
+package org.javacs.markup;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.util.Types;
+import org.javacs.FileStore;
+import org.javacs.ReferenceIndex;
+
+/**
+ * IncrementalUnused finds the same unused declarations as WarnUnused, but only scans the class members whose text
+ * changed since the last lint of the file. The facts about each member, meaning which members of the file it refers
+ * to and which of its own declarations it doesn't use, are remembered by the member's text. The mark and sweep over
+ * the private members is then repeated from those facts, which is cheap because it doesn't look inside the members.
+ *
+ * <p>The facts of a file are thrown away when anything outside the bodies of its members changes, such as an import or
+ * a member's signature, because that can change what the unchanged members refer to.
+ */
+class IncrementalUnused {
+    /** What a class member refers to, and which of its own declarations it doesn't use */
+    private static class Facts {
+        /** Ids of the members of this file that the member refers to, from ReferenceIndex.id */
+        final Set<String> refs;
+        /** End offsets of the member's unused declarations, relative to the start of the member */
+        final int[] unused;
+
+        Facts(Set<String> refs, int[] unused) {
+            this.refs = refs;
+            this.unused = unused;
+        }
+    }
+
+    private static class FileFacts {
+        /** Checksum of the file without the bodies of its members */
+        final long skeleton;
+        /** The facts of each member, by the checksum of its text */
+        final Map<Long, Facts> members;
+
+        FileFacts(long skeleton, Map<Long, Facts> members) {
+            this.skeleton = skeleton;
+            this.members = members;
+        }
+    }
+
+    /** The facts found by the last lint of each open file */
+    private static final Map<URI, FileFacts> cache = new HashMap<>();
+
+    private final JavacTask task;
+    private final Trees trees;
+    private final Types types;
+    private final SourcePositions pos;
+    private final CompilationUnitTree root;
+    private final CharSequence contents;
+    private final Set<Element> topLevelClasses = new HashSet<>();
+    private final Map<Long, Facts> previous = new HashMap<>(), current = new HashMap<>();
+    private final Map<String, TreePath> privateDeclarations = new HashMap<>();
+    private final Set<String> used = new HashSet<>();
+    private final Set<Element> unusedInMembers = new HashSet<>();
+    private int reused, scanned;
+
+    private IncrementalUnused(JavacTask task, CompilationUnitTree root) {
+        this.task = task;
+        this.trees = Trees.instance(task);
+        this.types = task.getTypes();
+        this.pos = trees.getSourcePositions();
+        this.root = root;
+        try {
+            this.contents = root.getSourceFile().getCharContent(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** The private declarations and local variables in `root` that are never used */
+    static synchronized Set<Element> notUsed(JavacTask task, CompilationUnitTree root) {
+        var started = Instant.now();
+        var uri = root.getSourceFile().toUri();
+        var find = new IncrementalUnused(task, root);
+        var skeleton = find.skeleton();
+        var cached = cache.get(uri);
+        if (cached != null && cached.skeleton == skeleton) {
+            find.previous.putAll(cached.members);
+        }
+        var rootPath = new TreePath(root);
+        for (var t : root.getTypeDecls()) {
+            find.topLevelClasses.add(find.trees.getElement(new TreePath(rootPath, t)));
+        }
+        for (var t : root.getTypeDecls()) {
+            find.declare(new TreePath(rootPath, t));
+        }
+        var result = find.notUsed();
+        // Only remember open files, which will be linted again after the next edit
+        if (FileStore.version(Paths.get(uri)) != -1) {
+            cache.put(uri, new FileFacts(skeleton, find.current));
+        } else {
+            cache.remove(uri);
+        }
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(
+                String.format(
+                        "...found unused declarations in %s, re-using %d and scanning %d members, in %d ms",
+                        Paths.get(uri).getFileName(), find.reused, find.scanned, elapsed));
+        return result;
+    }
+
+    private Set<Element> notUsed() {
+        var unused = new HashSet<Element>(unusedInMembers);
+        for (var id : privateDeclarations.keySet()) {
+            if (!used.contains(id)) {
+                unused.add(trees.getElement(privateDeclarations.get(id)));
+            }
+        }
+        unused.removeIf(Objects::isNull);
+        unused.removeIf(i -> i.toString().equals("<error>"));
+        return unused;
+    }
+
+    /** Reach the class member at `path` now if it's visible or already used, or later when it's first used */
+    private void declare(TreePath path) {
+        var t = path.getLeaf();
+        if (t instanceof ClassTree || t instanceof MethodTree || t instanceof VariableTree) {
+            var id = id(trees.getElement(path));
+            if (!WarnUnused.isVisible(t)) {
+                // Like WarnUnused, a private declaration without an element is neither reported nor scanned
+                if (id == null) return;
+                if (!used.contains(id)) {
+                    privateDeclarations.put(id, path);
+                    return;
+                }
+            }
+        }
+        reach(path);
+    }
+
+    private void reach(TreePath path) {
+        if (path.getLeaf() instanceof ClassTree) {
+            var header = new WarnUnused(task);
+            header.scanHeader(path);
+            for (var ref : refs(header)) {
+                sweep(ref);
+            }
+            for (var member : ((ClassTree) path.getLeaf()).getMembers()) {
+                declare(new TreePath(path, member));
+            }
+            return;
+        }
+        var facts = facts(path);
+        unusedInMembers.addAll(declarationsAt(path, facts.unused));
+        for (var ref : facts.refs) {
+            sweep(ref);
+        }
+    }
+
+    private void sweep(String id) {
+        var firstUse = used.add(id);
+        var notReached = firstUse && privateDeclarations.containsKey(id);
+        if (notReached) {
+            reach(privateDeclarations.get(id));
+        }
+    }
+
+    /** The facts of the member at `path`, from the last lint if its text hasn't changed */
+    private Facts facts(TreePath path) {
+        var start = (int) pos.getStartPosition(root, path.getLeaf());
+        var end = (int) pos.getEndPosition(root, path.getLeaf());
+        // Generated members like default constructors have no text to remember them by
+        if (start < 0 || end < start) {
+            scanned++;
+            return scan(path, start);
+        }
+        var key = key(path, start, end);
+        var facts = previous.get(key);
+        if (facts != null) {
+            reused++;
+        } else {
+            scanned++;
+            facts = scan(path, start);
+        }
+        current.put(key, facts);
+        return facts;
+    }
+
+    private Facts scan(TreePath path, int start) {
+        var warnUnused = new WarnUnused(task);
+        warnUnused.scanMember(path);
+        var unused = new ArrayList<Integer>();
+        for (var el : warnUnused.notUsed()) {
+            var declaration = warnUnused.declaration(el);
+            if (declaration == null) continue;
+            unused.add((int) pos.getEndPosition(root, declaration.getLeaf()) - start);
+        }
+        return new Facts(refs(warnUnused), unused.stream().mapToInt(i -> i).toArray());
+    }
+
+    /** The ids of the members of this file that `warnUnused` found references to */
+    private Set<String> refs(WarnUnused warnUnused) {
+        var refs = new HashSet<String>();
+        for (var el : warnUnused.used()) {
+            if (!isDeclaredInThisFile(el)) continue;
+            var id = id(el);
+            if (id != null) refs.add(id);
+        }
+        return refs;
+    }
+
+    private boolean isDeclaredInThisFile(Element el) {
+        while (el != null && !(el.getEnclosingElement() instanceof PackageElement)) {
+            el = el.getEnclosingElement();
+        }
+        return el != null && topLevelClasses.contains(el);
+    }
+
+    private String id(Element el) {
+        if (el == null) return null;
+        return ReferenceIndex.id(types, el);
+    }
+
+    /** Find the declarations in the member at `path` that end at `offsets`, relative to the start of the member */
+    private List<Element> declarationsAt(TreePath path, int[] offsets) {
+        if (offsets.length == 0) return List.of();
+        var start = (int) pos.getStartPosition(root, path.getLeaf());
+        var ends = new HashSet<Integer>();
+        for (var offset : offsets) {
+            ends.add(start + offset);
+        }
+        var found = new ArrayList<Element>();
+        class FindDeclarations extends TreePathScanner<Void, Void> {
+            void check(Tree t) {
+                if (ends.contains((int) pos.getEndPosition(root, t))) {
+                    found.add(trees.getElement(getCurrentPath()));
+                }
+            }
+
+            @Override
+            public Void visitClass(ClassTree t, Void __) {
+                check(t);
+                return super.visitClass(t, null);
+            }
+
+            @Override
+            public Void visitMethod(MethodTree t, Void __) {
+                check(t);
+                return super.visitMethod(t, null);
+            }
+
+            @Override
+            public Void visitVariable(VariableTree t, Void __) {
+                check(t);
+                return super.visitVariable(t, null);
+            }
+        }
+        new FindDeclarations().scan(path, null);
+        return found;
+    }
+
+    /** Checksum of the text of the member at `path` and the class it belongs to */
+    private long key(TreePath path, int start, int end) {
+        var crc = new CRC32();
+        var parent = id(trees.getElement(path.getParentPath()));
+        crc.update(String.valueOf(parent).getBytes(StandardCharsets.UTF_8));
+        update(crc, start, end);
+        return crc.getValue();
+    }
+
+    /** Checksum of the file, leaving out method bodies, field initializers and initializer blocks */
+    private long skeleton() {
+        var bodies = new ArrayList<int[]>();
+        for (var t : root.getTypeDecls()) {
+            if (t instanceof ClassTree) bodies((ClassTree) t, bodies);
+        }
+        var crc = new CRC32();
+        var last = 0;
+        for (var span : bodies) {
+            // Skip generated bodies, which have no position
+            if (span[0] < last || span[1] < span[0]) continue;
+            update(crc, last, span[0]);
+            last = span[1];
+        }
+        update(crc, last, contents.length());
+        return crc.getValue();
+    }
+
+    private void bodies(ClassTree c, List<int[]> spans) {
+        for (var member : c.getMembers()) {
+            Tree body = null;
+            if (member instanceof MethodTree) {
+                body = ((MethodTree) member).getBody();
+            } else if (member instanceof VariableTree) {
+                body = ((VariableTree) member).getInitializer();
+            } else if (member instanceof BlockTree) {
+                body = member;
+            } else if (member instanceof ClassTree) {
+                bodies((ClassTree) member, spans);
+            }
+            if (body != null) {
+                spans.add(new int[] {(int) pos.getStartPosition(root, body), (int) pos.getEndPosition(root, body)});
+            }
+        }
+    }
+
+    private void update(CRC32 crc, int start, int end) {
+        var text = contents.subSequence(start, Math.min(end, contents.length())).toString();
+        crc.update(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
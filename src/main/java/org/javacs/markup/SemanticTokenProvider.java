@@ -0,0 +1,162 @@
+package org.javacs.markup;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.javacs.lsp.Range;
+import org.javacs.lsp.SemanticTokens;
+import org.javacs.lsp.SemanticTokensDelta;
+import org.javacs.lsp.SemanticTokensEdit;
+
+/**
+ * SemanticTokenProvider encodes the colors that Colorizer finds as LSP semantic tokens. It remembers the tokens of each
+ * open document by version, so a request that arrives right after a lint doesn't need another compile. It also
+ * remembers the last tokens sent to the client, so delta requests only send what changed. Documents are keyed by Path,
+ * because the client may encode a URI differently than Path.toUri().
+ */
+public class SemanticTokenProvider {
+    public static final List<String> TOKEN_TYPES = List.of("property");
+    public static final List<String> TOKEN_MODIFIERS = List.of("static");
+    /** The index of "property" in TOKEN_TYPES, and the bit for "static" in TOKEN_MODIFIERS */
+    private static final int PROPERTY = 0, STATIC = 1;
+
+    private static class Tokens {
+        final int version;
+        final String resultId;
+        final int[] data;
+
+        Tokens(int version, String resultId, int[] data) {
+            this.version = version;
+            this.resultId = resultId;
+            this.data = data;
+        }
+    }
+
+    /** The most recent tokens of each document, which may not have been sent yet */
+    private final Map<Path, Tokens> latest = new HashMap<>();
+    /** The tokens that were last sent to the client for each document */
+    private final Map<Path, Tokens> sent = new HashMap<>();
+    private int nextResultId;
+
+    /** Remember the tokens in `colors`, which were found by compiling version `version` of the document */
+    public void update(SemanticColors colors, int version) {
+        var file = Paths.get(colors.uri);
+        var previous = latest.get(file);
+        if (previous != null && previous.version > version) return;
+        latest.put(file, new Tokens(version, Integer.toString(nextResultId++), encode(colors)));
+    }
+
+    /** Are the tokens of `uri` up-to-date with `version`? */
+    public boolean isCurrent(URI uri, int version) {
+        var tokens = latest.get(Paths.get(uri));
+        return tokens != null && tokens.version == version;
+    }
+
+    /** The latest tokens of `uri`, or no tokens if it hasn't been compiled */
+    public SemanticTokens full(URI uri) {
+        var file = Paths.get(uri);
+        var tokens = latest.get(file);
+        if (tokens == null) return new SemanticTokens(null, new int[0]);
+        sent.put(file, tokens);
+        return new SemanticTokens(tokens.resultId, tokens.data);
+    }
+
+    /**
+     * The edits that turn the tokens with `previousResultId` into the latest tokens, or all the latest tokens if the
+     * client's tokens are not the ones that were last sent.
+     */
+    public Object delta(URI uri, String previousResultId) {
+        var file = Paths.get(uri);
+        var before = sent.get(file);
+        var after = latest.get(file);
+        if (before == null || after == null || !before.resultId.equals(previousResultId)) return full(uri);
+        sent.put(file, after);
+        return new SemanticTokensDelta(after.resultId, diff(before.data, after.data));
+    }
+
+    /** The latest tokens of `uri` on the lines in `range` */
+    public SemanticTokens range(URI uri, Range range) {
+        var tokens = latest.get(Paths.get(uri));
+        if (tokens == null) return new SemanticTokens(null, new int[0]);
+        return new SemanticTokens(null, slice(tokens.data, range.start.line, range.end.line));
+    }
+
+    /** Tokens of `colors`, which only cover part of a file, for a range request */
+    public static SemanticTokens partial(SemanticColors colors) {
+        return new SemanticTokens(null, encode(colors));
+    }
+
+    public void forget(URI uri) {
+        latest.remove(Paths.get(uri));
+        sent.remove(Paths.get(uri));
+    }
+
+    /** Encode each field as [deltaLine, deltaStartChar, length, tokenType, tokenModifiers], relative to the last one */
+    static int[] encode(SemanticColors colors) {
+        // Colorizer adds the same Range to both lists, and Range doesn't override equals
+        var statics = new HashSet<Range>(colors.statics);
+        var fields = new ArrayList<Range>(colors.fields);
+        fields.removeIf(r -> r.start.line != r.end.line);
+        fields.sort(Comparator.<Range>comparingInt(r -> r.start.line).thenComparingInt(r -> r.start.character));
+        var data = new int[fields.size() * 5];
+        var n = 0;
+        int line = 0, character = 0;
+        for (var r : fields) {
+            // Colorizer can visit the same name twice, for example in an enum constant
+            if (n > 0 && r.start.line == line && r.start.character == character) continue;
+            data[n++] = r.start.line - line;
+            data[n++] = r.start.line == line ? r.start.character - character : r.start.character;
+            data[n++] = r.end.character - r.start.character;
+            data[n++] = PROPERTY;
+            data[n++] = statics.contains(r) ? STATIC : 0;
+            line = r.start.line;
+            character = r.start.character;
+        }
+        return Arrays.copyOf(data, n);
+    }
+
+    /** The tokens in `data` that start on lines `firstLine` to `lastLine`, re-encoded relative to each other */
+    static int[] slice(int[] data, int firstLine, int lastLine) {
+        var result = new int[data.length];
+        var n = 0;
+        int line = 0, character = 0, lastKeptLine = 0, lastKeptCharacter = 0;
+        for (var i = 0; i < data.length; i += 5) {
+            character = data[i] == 0 ? character + data[i + 1] : data[i + 1];
+            line += data[i];
+            if (line < firstLine) continue;
+            if (line > lastLine) break;
+            result[n++] = line - lastKeptLine;
+            result[n++] = line == lastKeptLine ? character - lastKeptCharacter : character;
+            result[n++] = data[i + 2];
+            result[n++] = data[i + 3];
+            result[n++] = data[i + 4];
+            lastKeptLine = line;
+            lastKeptCharacter = character;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** A single edit that replaces everything between the common prefix and suffix of `before` and `after` */
+    static List<SemanticTokensEdit> diff(int[] before, int[] after) {
+        var prefix = 0;
+        while (prefix < before.length && prefix < after.length && before[prefix] == after[prefix]) {
+            prefix++;
+        }
+        if (prefix == before.length && prefix == after.length) return List.of();
+        var suffix = 0;
+        while (suffix < before.length - prefix
+                && suffix < after.length - prefix
+                && before[before.length - 1 - suffix] == after[after.length - 1 - suffix]) {
+            suffix++;
+        }
+        var data = Arrays.copyOfRange(after, prefix, after.length - suffix);
+        return List.of(new SemanticTokensEdit(prefix, before.length - prefix - suffix, data));
+    }
+}
@@ -1,14 +1,12 @@
 package org.javacs.markup;
 
-import com.sun.source.tree.CompilationUnitTree;
-import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
-import com.sun.source.tree.NewClassTree;
 import com.sun.source.tree.ThrowTree;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
-import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.Trees;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -18,47 +16,66 @@ import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 
-class WarnNotThrown extends TreePathScanner<Void, Map<TreePath, String>> {
-    private final JavacTask task;
-    private CompilationUnitTree root;
+class WarnNotThrown implements FusedScanner.Analysis {
+    private final Trees trees;
+    private final Map<TreePath, String> notThrown;
     private Map<String, TreePath> declaredExceptions = new HashMap<>();
     private Set<String> observedExceptions = new HashSet<>();
+    /** The scopes of the methods that enclose the current method */
+    private final Deque<Map<String, TreePath>> pushDeclared = new ArrayDeque<>();
+    private final Deque<Set<String>> pushObserved = new ArrayDeque<>();
 
-    WarnNotThrown(JavacTask task) {
-        this.task = task;
+    WarnNotThrown(JavacTask task, Map<TreePath, String> notThrown) {
+        this.trees = Trees.instance(task);
+        this.notThrown = notThrown;
     }
 
     @Override
-    public Void visitCompilationUnit(CompilationUnitTree t, Map<TreePath, String> notThrown) {
-        root = t;
-        return super.visitCompilationUnit(t, notThrown);
+    public void enter(TreePath path) {
+        switch (path.getLeaf().getKind()) {
+            case METHOD:
+                // Create a new method scope
+                pushDeclared.push(declaredExceptions);
+                pushObserved.push(observedExceptions);
+                declaredExceptions = declared(path, (MethodTree) path.getLeaf());
+                observedExceptions = new HashSet<>();
+                break;
+            case THROW:
+                var t = (ThrowTree) path.getLeaf();
+                addThrown(trees.getTypeMirror(new TreePath(path, t.getExpression())));
+                break;
+            case NEW_CLASS:
+            case METHOD_INVOCATION:
+                var target = trees.getElement(path);
+                if (target instanceof ExecutableElement) {
+                    var method = (ExecutableElement) target;
+                    for (var type : method.getThrownTypes()) {
+                        addThrown(type);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
     }
 
     @Override
-    public Void visitMethod(MethodTree t, Map<TreePath, String> notThrown) {
-        // Create a new method scope
-        var pushDeclared = declaredExceptions;
-        var pushObserved = observedExceptions;
-        declaredExceptions = declared(t);
-        observedExceptions = new HashSet<>();
-        // Recursively scan for 'throw' and method calls
-        super.visitMethod(t, notThrown);
+    public void exit(TreePath path) {
+        if (!(path.getLeaf() instanceof MethodTree)) return;
         // Check for exceptions that were never thrown
         for (var exception : declaredExceptions.keySet()) {
             if (!observedExceptions.contains(exception)) {
                 notThrown.put(declaredExceptions.get(exception), exception);
             }
         }
-        declaredExceptions = pushDeclared;
-        observedExceptions = pushObserved;
-        return null;
+        declaredExceptions = pushDeclared.pop();
+        observedExceptions = pushObserved.pop();
     }
 
-    private Map<String, TreePath> declared(MethodTree t) {
-        var trees = Trees.instance(task);
+    private Map<String, TreePath> declared(TreePath method, MethodTree t) {
         var names = new HashMap<String, TreePath>();
         for (var e : t.getThrows()) {
-            var path = new TreePath(getCurrentPath(), e);
+            var path = new TreePath(method, e);
             var to = trees.getElement(path);
             if (!(to instanceof TypeElement)) continue;
             var type = (TypeElement) to;
@@ -68,40 +85,6 @@ class WarnNotThrown extends TreePathScanner<Void, Map<TreePath, String>> {
         return names;
     }
 
-    @Override
-    public Void visitThrow(ThrowTree t, Map<TreePath, String> notThrown) {
-        var path = new TreePath(getCurrentPath(), t.getExpression());
-        var type = Trees.instance(task).getTypeMirror(path);
-        addThrown(type);
-        return super.visitThrow(t, notThrown);
-    }
-
-    @Override
-    public Void visitNewClass(NewClassTree t, Map<TreePath, String> notThrown) {
-        var trees = Trees.instance(task);
-        var target = trees.getElement(getCurrentPath());
-        if (target instanceof ExecutableElement) {
-            var method = (ExecutableElement) target;
-            for (var type : method.getThrownTypes()) {
-                addThrown(type);
-            }
-        }
-        return super.visitNewClass(t, notThrown);
-    }
-
-    @Override
-    public Void visitMethodInvocation(MethodInvocationTree t, Map<TreePath, String> notThrown) {
-        var trees = Trees.instance(task);
-        var target = trees.getElement(getCurrentPath());
-        if (target instanceof ExecutableElement) {
-            var method = (ExecutableElement) target;
-            for (var type : method.getThrownTypes()) {
-                addThrown(type);
-            }
-        }
-        return super.visitMethodInvocation(t, notThrown);
-    }
-
     private void addThrown(TypeMirror type) {
         if (type instanceof DeclaredType) {
             var declared = (DeclaredType) type;
@@ -47,6 +47,43 @@ class WarnUnused extends TreeScanner<Void, Void> {
         this.trees = Trees.instance(task);
     }
 
+    /**
+     * Scan the class member at `unit` as if it were reachable, to find what it refers to and what it declares but
+     * doesn't use. Afterwards, used() holds everything the member refers to, and notUsed() what it doesn't use.
+     */
+    void scanMember(TreePath unit) {
+        var el = trees.getElement(unit);
+        if (el != null) used.add(el);
+        scanPath(unit);
+        if (el != null) used.remove(el);
+    }
+
+    /** Scan the annotations, type parameters and supertypes of the class at `classPath`, but not its members */
+    void scanHeader(TreePath classPath) {
+        var prev = path;
+        path = classPath;
+        try {
+            var t = (ClassTree) classPath.getLeaf();
+            scan(t.getModifiers(), null);
+            scan(t.getTypeParameters(), null);
+            scan(t.getExtendsClause(), null);
+            scan(t.getImplementsClause(), null);
+        } finally {
+            path = prev;
+        }
+    }
+
+    Set<Element> used() {
+        return used;
+    }
+
+    /** The declaration of `el`, a private declaration or local variable that was found by the scan */
+    TreePath declaration(Element el) {
+        var path = privateDeclarations.get(el);
+        if (path != null) return path;
+        return localVariables.get(el);
+    }
+
     Set<Element> notUsed() {
         var unused = new HashSet<Element>();
         unused.addAll(privateDeclarations.keySet());
@@ -103,12 +140,20 @@ class WarnUnused extends TreeScanner<Void, Void> {
     }
 
     private boolean isReachable(TreePath path) {
-        // Check if t is reachable because it's public
-        var t = path.getLeaf();
+        if (isLocalVariable(path) || isVisible(path.getLeaf())) {
+            return true;
+        }
+        // Check if t has been referenced by a reachable element
+        var el = trees.getElement(path);
+        return used.contains(el);
+    }
+
+    /** Is the member `t` reachable without any references, because it is not private or is a no-arg constructor? */
+    static boolean isVisible(Tree t) {
         if (t instanceof VariableTree) {
             var v = (VariableTree) t;
             var isPrivate = v.getModifiers().getFlags().contains(Modifier.PRIVATE);
-            if (!isPrivate || isLocalVariable(path)) {
+            if (!isPrivate) {
                 return true;
             }
         }
@@ -127,9 +172,7 @@ class WarnUnused extends TreeScanner<Void, Void> {
                 return true;
             }
         }
-        // Check if t has been referenced by a reachable element
-        var el = trees.getElement(path);
-        return used.contains(el);
+        return false;
     }
 
     private boolean isLocalVariable(TreePath path) {
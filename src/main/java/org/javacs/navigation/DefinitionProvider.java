@@ -1,12 +1,17 @@
 package org.javacs.navigation;
 
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.VariableTree;
 import com.sun.source.util.Trees;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.logging.Logger;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeKind;
 import javax.tools.JavaFileObject;
 import org.javacs.CompileTask;
@@ -51,11 +56,52 @@ public class DefinitionProvider {
             if (otherFile.get().toUri().equals(file.toUri())) {
                 return findDefinitions(task, element);
             }
+            var erasedParameterTypes = erasedParameterTypes(task, element);
             task.close();
+            var parsed = findParsedDefinition(otherFile.get(), element, className, erasedParameterTypes);
+            if (parsed.isPresent()) {
+                return List.of(parsed.get());
+            }
             return findRemoteDefinitions(otherFile.get());
         }
     }
 
+    private String[] erasedParameterTypes(CompileTask task, Element element) {
+        if (!(element instanceof ExecutableElement)) return null;
+        return FindHelper.erasedParameterTypes(task, (ExecutableElement) element);
+    }
+
+    /**
+     * Find the declaration of `element` by parsing `otherFile`, instead of compiling it together with `file`. Gives up if
+     * the declaration can't be matched by name and parameter types, for example when a parameter has a generic type.
+     */
+    private Optional<Location> findParsedDefinition(
+            JavaFileObject otherFile, Element element, String className, String[] erasedParameterTypes) {
+        var parse = compiler.parse(otherFile);
+        var type = FindHelper.findType(parse, className);
+        if (type == null) return Optional.empty();
+        if (element instanceof TypeElement) {
+            LOG.info("...found definition of " + className + " by parsing " + otherFile.getName());
+            return Optional.of(FindHelper.location(parse, type));
+        }
+        var name = element.getSimpleName();
+        for (var member : type.getMembers()) {
+            if (element instanceof ExecutableElement && member instanceof MethodTree) {
+                var method = (MethodTree) member;
+                if (!method.getName().contentEquals(name)) continue;
+                if (!FindHelper.isSameMethodType(method, erasedParameterTypes)) continue;
+            } else if (element instanceof VariableElement && member instanceof VariableTree) {
+                var variable = (VariableTree) member;
+                if (!variable.getName().contentEquals(name)) continue;
+            } else {
+                continue;
+            }
+            LOG.info("...found definition of " + className + "#" + name + " by parsing " + otherFile.getName());
+            return Optional.of(FindHelper.location(parse, member));
+        }
+        return Optional.empty();
+    }
+
     private List<Location> findError(Element element) {
         var name = element.getSimpleName();
         if (name == null) return NOT_SUPPORTED;
@@ -70,6 +116,8 @@ public class DefinitionProvider {
     private List<Location> findAllMembers(String className, String memberName) {
         var otherFile = compiler.findAnywhere(className);
         if (otherFile.isEmpty()) return List.of();
+        var declared = findDeclaredMembers(otherFile.get(), className, memberName);
+        if (!declared.isEmpty()) return declared;
         var fileAsSource = new SourceFileObject(file);
         var sources = List.of(fileAsSource, otherFile.get());
         if (otherFile.get().toString().equals(file.toUri())) {
@@ -91,6 +139,21 @@ public class DefinitionProvider {
         return locations;
     }
 
+    /** Find the members named `memberName` declared directly in `className`, by parsing the file that declares it */
+    private List<Location> findDeclaredMembers(JavaFileObject otherFile, String className, String memberName) {
+        var parse = compiler.parse(otherFile);
+        var type = FindHelper.findType(parse, className);
+        if (type == null) return List.of();
+        var locations = new ArrayList<Location>();
+        for (var member : type.getMembers()) {
+            if (member instanceof MethodTree && ((MethodTree) member).getName().contentEquals(memberName)
+                    || member instanceof VariableTree && ((VariableTree) member).getName().contentEquals(memberName)) {
+                locations.add(FindHelper.location(parse, member));
+            }
+        }
+        return locations;
+    }
+
     private String className(Element element) {
         while (element != null) {
             if (element instanceof TypeElement) {
@@ -0,0 +1,73 @@
+package org.javacs.navigation;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import org.javacs.CompilerProvider;
+import org.javacs.TypeHierarchy;
+import org.javacs.lsp.Location;
+
+public class ImplementationProvider {
+    private final CompilerProvider compiler;
+    private final Path file;
+    private final int line, column;
+
+    public static final List<Location> NOT_SUPPORTED = List.of();
+
+    public ImplementationProvider(CompilerProvider compiler, Path file, int line, int column) {
+        this.compiler = compiler;
+        this.file = file;
+        this.line = line;
+        this.column = column;
+    }
+
+    public List<Location> find() {
+        String className, key = null;
+        List<String> parameterTypes = null;
+        try (var task = compiler.compile(file)) {
+            var element = NavigationHelper.findElement(task, file, line, column);
+            if (element == null) return NOT_SUPPORTED;
+            if (NavigationHelper.isType(element)) {
+                className = ((TypeElement) element).getQualifiedName().toString();
+            } else if (element.getKind() == ElementKind.METHOD && canOverride(element.getModifiers())) {
+                var method = (ExecutableElement) element;
+                var parentClass = (TypeElement) method.getEnclosingElement();
+                className = parentClass.getQualifiedName().toString();
+                key = TypeHierarchy.methodKey(method.getSimpleName(), method.getParameters().size());
+                parameterTypes = TypeHierarchy.parameterTypes(method);
+            } else {
+                return NOT_SUPPORTED;
+            }
+        }
+        // The task is closed first, because the type hierarchy may need to compile other files
+        if (key == null) return findTypeImplementations(className);
+        return findMethodImplementations(className, key, parameterTypes);
+    }
+
+    private boolean canOverride(Set<Modifier> modifiers) {
+        return !modifiers.contains(Modifier.STATIC)
+                && !modifiers.contains(Modifier.PRIVATE)
+                && !modifiers.contains(Modifier.FINAL);
+    }
+
+    private List<Location> findTypeImplementations(String className) {
+        var locations = new ArrayList<Location>();
+        for (var d : compiler.typeHierarchy().subtypes(className)) {
+            locations.add(d.location);
+        }
+        return locations;
+    }
+
+    private List<Location> findMethodImplementations(String className, String key, List<String> parameterTypes) {
+        var locations = new ArrayList<Location>();
+        for (var d : compiler.typeHierarchy().subtypes(className)) {
+            locations.addAll(d.overrides(key, parameterTypes));
+        }
+        return locations;
+    }
+}
@@ -0,0 +1,94 @@
+package org.javacs.navigation;
+
+import com.sun.source.tree.Tree;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+import org.javacs.CompilerProvider;
+import org.javacs.FileStore;
+import org.javacs.Outline;
+import org.javacs.ReferenceIndex;
+import org.javacs.lsp.Position;
+
+/**
+ * ReferenceCounts counts the references to each class and method declared in a file, for code lenses. The counts come
+ * from the reference index, so nothing else is compiled, and there are no counts until the index covers the whole
+ * workspace, because a count that leaves out unindexed files would be wrong. The declaring file is compiled once per
+ * version, to identify its declarations and re-index it.
+ */
+public class ReferenceCounts {
+    private static class Counts {
+        final int version;
+        final Instant modified;
+        /** Number of references to the declaration whose name starts at each "line:character" */
+        final Map<String, Integer> byPosition = new HashMap<>();
+
+        Counts(Path file) {
+            this.version = FileStore.version(file);
+            this.modified = FileStore.modified(file);
+        }
+
+        boolean isCurrent(Path file) {
+            return version == FileStore.version(file) && Objects.equals(modified, FileStore.modified(file));
+        }
+    }
+
+    private static final Map<Path, Counts> cache = new HashMap<>();
+
+    /**
+     * The number of references to the class or method whose name starts at `position`, or -1 if it can't be found or
+     * the index doesn't cover the workspace yet
+     */
+    public static synchronized int count(CompilerProvider compiler, Path file, Position position) {
+        var counts = cache.get(file);
+        if (counts == null || !counts.isCurrent(file)) {
+            // Don't cache the lack of counts, so they appear once the index catches up
+            if (!compiler.referenceIndex().coversWorkspace(file)) {
+                LOG.fine("...reference index doesn't cover the workspace yet, won't count references in " + file);
+                return -1;
+            }
+            counts = countAll(compiler, file);
+            cache.put(file, counts);
+        }
+        return counts.byPosition.getOrDefault(key(position), -1);
+    }
+
+    public static synchronized void forget(Path file) {
+        cache.remove(file);
+    }
+
+    private static Counts countAll(CompilerProvider compiler, Path file) {
+        var started = Instant.now();
+        var counts = new Counts(file);
+        var index = compiler.referenceIndex();
+        try (var task = compiler.compile(file)) {
+            index.update(task);
+            var types = task.task.getTypes();
+            for (var d : Outline.of(file).declarations) {
+                if (d.name.isEmpty() || d.kind == Tree.Kind.VARIABLE) continue;
+                var at = d.nameStart;
+                var element = NavigationHelper.findElement(task, file, at.line + 1, at.character + 1);
+                if (element == null) continue;
+                var id = ReferenceIndex.id(types, element);
+                if (id == null) continue;
+                counts.byPosition.put(key(at), index.count(id));
+            }
+        }
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(
+                String.format(
+                        "...counted references to %d declarations in %s in %d ms",
+                        counts.byPosition.size(), file.getFileName(), elapsed));
+        return counts;
+    }
+
+    private static String key(Position position) {
+        return position.line + ":" + position.character;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -2,12 +2,19 @@ package org.javacs.navigation;
 
 import com.sun.source.util.TreePath;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 import javax.lang.model.element.TypeElement;
+import org.javacs.CompileAborted;
 import org.javacs.CompileTask;
 import org.javacs.CompilerProvider;
 import org.javacs.FindHelper;
+import org.javacs.ReferenceIndex;
 import org.javacs.lsp.Location;
 
 public class ReferenceProvider {
@@ -25,17 +32,30 @@ public class ReferenceProvider {
     }
 
     public List<Location> find() {
+        return find(__ -> {}, () -> false);
+    }
+
+    /**
+     * Find references, passing each group of references to `partial` as soon as it's found. If `cancelled` becomes true,
+     * stop after the current chunk of files and return the references found so far.
+     */
+    public List<Location> find(Consumer<List<Location>> partial, BooleanSupplier cancelled) {
         try (var task = compiler.compile(file)) {
             var element = NavigationHelper.findElement(task, file, line, column);
             if (element == null) return NOT_SUPPORTED;
             if (NavigationHelper.isLocal(element)) {
-                return findReferences(task);
+                var found = findReferences(task);
+                partial.accept(found);
+                return found;
             }
+            var id = ReferenceIndex.id(task.task.getTypes(), element);
+            if (id == null) return NOT_SUPPORTED;
             if (NavigationHelper.isType(element)) {
                 var type = (TypeElement) element;
                 var className = type.getQualifiedName().toString();
                 task.close();
-                return findTypeReferences(className);
+                var files = compiler.findTypeReferences(className);
+                return findIndexedReferences(id, files, partial, cancelled);
             }
             if (NavigationHelper.isMember(element)) {
                 var parentClass = (TypeElement) element.getEnclosingElement();
@@ -45,26 +65,62 @@ public class ReferenceProvider {
                     memberName = parentClass.getSimpleName().toString();
                 }
                 task.close();
-                return findMemberReferences(className, memberName);
+                var files = compiler.findMemberReferences(className, memberName);
+                return findIndexedReferences(id, files, partial, cancelled);
             }
             return NOT_SUPPORTED;
         }
     }
 
-    private List<Location> findTypeReferences(String className) {
-        var files = compiler.findTypeReferences(className);
+    /**
+     * Answer from the reference index, after re-indexing only the candidate files that have changed. Files that are
+     * already indexed are reported first, then each chunk of re-indexed files as soon as it's compiled.
+     */
+    private List<Location> findIndexedReferences(
+            String id, Path[] files, Consumer<List<Location>> partial, BooleanSupplier cancelled) {
         if (files.length == 0) return List.of();
-        try (var task = compiler.compile(files)) {
-            return findReferences(task);
+        var index = compiler.referenceIndex();
+        var stale = new ArrayList<Path>();
+        var locations = new ArrayList<Location>();
+        // Chunks can include files that were added to resolve other files, so don't report any file twice
+        var reported = new HashSet<Path>();
+        for (var f : files) {
+            if (index.isFresh(f)) {
+                locations.addAll(index.find(f, id));
+                reported.add(f);
+            } else {
+                stale.add(f);
+            }
         }
-    }
-
-    private List<Location> findMemberReferences(String className, String memberName) {
-        var files = compiler.findMemberReferences(className, memberName);
-        if (files.length == 0) return List.of();
-        try (var task = compiler.compile(files)) {
-            return findReferences(task);
+        LOG.info(
+                String.format(
+                        "...%d of %d candidate files for %s are indexed, compile the other %d",
+                        files.length - stale.size(), files.length, id, stale.size()));
+        if (!locations.isEmpty()) {
+            partial.accept(List.copyOf(locations));
+        }
+        if (stale.isEmpty()) return locations;
+        try {
+            compiler.compileInChunks(
+                    stale.toArray(Path[]::new),
+                    chunk -> {
+                        if (cancelled.getAsBoolean()) throw new CompileAborted();
+                        index.update(chunk);
+                        var found = new ArrayList<Location>();
+                        for (var root : chunk.roots) {
+                            var f = Paths.get(root.getSourceFile().toUri());
+                            if (!reported.add(f)) continue;
+                            found.addAll(index.find(f, id));
+                        }
+                        if (!found.isEmpty()) {
+                            partial.accept(found);
+                        }
+                        locations.addAll(found);
+                    });
+        } catch (CompileAborted __) {
+            LOG.info("...cancelled after finding " + locations.size() + " references");
         }
+        return locations;
     }
 
     private List<Location> findReferences(CompileTask task) {
@@ -79,4 +135,6 @@ public class ReferenceProvider {
         }
         return locations;
     }
+
+    private static final Logger LOG = Logger.getLogger("main");
 }
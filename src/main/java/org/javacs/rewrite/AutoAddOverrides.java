@@ -1,5 +1,6 @@
 package org.javacs.rewrite;
 
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import java.nio.file.Path;
@@ -22,14 +23,19 @@ public class AutoAddOverrides implements Rewrite {
     @Override
     public Map<Path, TextEdit[]> rewrite(CompilerProvider compiler) {
         try (var task = compiler.compile(file)) {
-            var missing = new ArrayList<TreePath>();
-            new FindMissingOverride(task.task).scan(task.root(), missing);
-            var list = addOverrides(task, missing);
-            return Map.of(file, list.toArray(new TextEdit[list.size()]));
+            return Map.of(file, fix(task, task.root()));
         }
     }
 
-    private List<TextEdit> addOverrides(CompileTask task, List<TreePath> missing) {
+    /** The edits that add missing @Override annotations to `root`, which is one of the files compiled by `task` */
+    static TextEdit[] fix(CompileTask task, CompilationUnitTree root) {
+        var missing = new ArrayList<TreePath>();
+        new FindMissingOverride(task.task).scan(root, missing);
+        var list = addOverrides(task, missing);
+        return list.toArray(new TextEdit[list.size()]);
+    }
+
+    private static List<TextEdit> addOverrides(CompileTask task, List<TreePath> missing) {
         var edits = new ArrayList<TextEdit>();
         var pos = Trees.instance(task.task).getSourcePositions();
         for (var t : missing) {
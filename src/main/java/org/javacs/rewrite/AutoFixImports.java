@@ -1,5 +1,6 @@
 package org.javacs.rewrite;
 
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.util.Trees;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -27,31 +28,50 @@ public class AutoFixImports implements Rewrite {
     public Map<Path, TextEdit[]> rewrite(CompilerProvider compiler) {
         LOG.info("Fix imports in " + file + "...");
         try (var task = compiler.compile(file)) {
-            var used = usedImports(task);
-            var unresolved = unresolvedNames(task);
-            var resolved = resolveNames(compiler, unresolved);
-            var all = new ArrayList<String>();
-            all.addAll(used);
-            all.addAll(resolved.values());
-            all.sort(String::compareTo); // TODO this is not always a good order
-            var edits = new ArrayList<TextEdit>();
-            edits.addAll(deleteImports(task));
-            edits.add(insertImports(task, all));
-            return Map.of(file, edits.toArray(new TextEdit[edits.size()]));
+            return Map.of(file, fix(task, task.root(), compiler.imports()));
         }
     }
 
-    private Set<String> usedImports(CompileTask task) {
+    /**
+     * The edits that fix the imports of `root`, which is one of the files compiled by `task`, or nothing if its imports
+     * are already right. Unresolved names are resolved to one of `alreadyImported`.
+     */
+    static TextEdit[] fix(CompileTask task, CompilationUnitTree root, Set<String> alreadyImported) {
+        var used = usedImports(task, root);
+        var unresolved = unresolvedNames(task, root);
+        var resolved = resolveNames(alreadyImported, unresolved);
+        var all = new ArrayList<String>();
+        all.addAll(used);
+        all.addAll(resolved.values());
+        all.sort(String::compareTo); // TODO this is not always a good order
+        if (all.equals(currentImports(root))) return new TextEdit[0];
+        var edits = new ArrayList<TextEdit>();
+        edits.addAll(deleteImports(task, root));
+        edits.add(insertImports(task, root, all));
+        return edits.toArray(new TextEdit[edits.size()]);
+    }
+
+    private static Set<String> usedImports(CompileTask task, CompilationUnitTree root) {
         var used = new HashSet<String>();
-        new FindUsedImports(task.task).scan(task.root(), used);
+        new FindUsedImports(task.task).scan(root, used);
         return used;
     }
 
-    private Set<String> unresolvedNames(CompileTask task) {
+    private static List<String> currentImports(CompilationUnitTree root) {
+        var current = new ArrayList<String>();
+        for (var i : root.getImports()) {
+            if (i.isStatic()) continue;
+            current.add(i.getQualifiedIdentifier().toString());
+        }
+        return current;
+    }
+
+    private static Set<String> unresolvedNames(CompileTask task, CompilationUnitTree root) {
         var names = new HashSet<String>();
+        var uri = root.getSourceFile().toUri();
         for (var d : task.diagnostics) {
             if (!d.getCode().equals("compiler.err.cant.resolve.location")) continue;
-            if (!d.getSource().toUri().equals(file.toUri())) continue;
+            if (d.getSource() == null || !d.getSource().toUri().equals(uri)) continue;
             var start = (int) d.getStartPosition();
             var end = (int) d.getEndPosition();
             CharSequence contents;
@@ -67,9 +87,8 @@ public class AutoFixImports implements Rewrite {
         return names;
     }
 
-    private Map<String, String> resolveNames(CompilerProvider compiler, Set<String> unresolved) {
+    private static Map<String, String> resolveNames(Set<String> alreadyImported, Set<String> unresolved) {
         var resolved = new HashMap<String, String>();
-        var alreadyImported = compiler.imports();
         for (var className : unresolved) {
             var candidates = new ArrayList<String>();
             for (var i : alreadyImported) {
@@ -89,10 +108,9 @@ public class AutoFixImports implements Rewrite {
         return resolved;
     }
 
-    private List<TextEdit> deleteImports(CompileTask task) {
+    private static List<TextEdit> deleteImports(CompileTask task, CompilationUnitTree root) {
         var edits = new ArrayList<TextEdit>();
         var pos = Trees.instance(task.task).getSourcePositions();
-        var root = task.root();
         for (var i : root.getImports()) {
             if (i.isStatic()) continue;
             var start = pos.getStartPosition(root, i);
@@ -103,8 +121,8 @@ public class AutoFixImports implements Rewrite {
         return edits;
     }
 
-    private TextEdit insertImports(CompileTask task, List<String> qualifiedNames) {
-        var pos = insertPosition(task);
+    private static TextEdit insertImports(CompileTask task, CompilationUnitTree root, List<String> qualifiedNames) {
+        var pos = insertPosition(task, root);
         var text = new StringBuilder();
         for (var i : qualifiedNames) {
             text.append("import ").append(i).append(";\n");
@@ -112,9 +130,8 @@ public class AutoFixImports implements Rewrite {
         return new TextEdit(new Range(pos, pos), text.toString());
     }
 
-    private Position insertPosition(CompileTask task) {
+    private static Position insertPosition(CompileTask task, CompilationUnitTree root) {
         var pos = Trees.instance(task.task).getSourcePositions();
-        var root = task.root();
         // If there are imports, use the start of the first import as the insert position
         for (var i : root.getImports()) {
             if (!i.isStatic()) {
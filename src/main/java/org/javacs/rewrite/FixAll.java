@@ -0,0 +1,50 @@
+package org.javacs.rewrite;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.javacs.CompilerProvider;
+import org.javacs.lsp.TextEdit;
+
+/**
+ * FixAll fixes the imports and adds missing @Override annotations in many files at once, like a whole package or the
+ * whole workspace. The files are compiled in chunks, and the workspace's imports are only read once, instead of once
+ * per file.
+ */
+public class FixAll implements Rewrite {
+    private final Path[] files;
+
+    public FixAll(Path[] files) {
+        this.files = files;
+    }
+
+    @Override
+    public Map<Path, TextEdit[]> rewrite(CompilerProvider compiler) {
+        LOG.info(String.format("Fix imports and overrides in %d files...", files.length));
+        var started = Instant.now();
+        var alreadyImported = compiler.imports();
+        var edits = new HashMap<Path, TextEdit[]>();
+        compiler.compileInChunks(
+                files,
+                task -> {
+                    for (var root : task.roots) {
+                        var imports = AutoFixImports.fix(task, root, alreadyImported);
+                        var overrides = AutoAddOverrides.fix(task, root);
+                        if (imports.length == 0 && overrides.length == 0) continue;
+                        var both = Stream.concat(Arrays.stream(imports), Arrays.stream(overrides));
+                        edits.put(Paths.get(root.getSourceFile().toUri()), both.toArray(TextEdit[]::new));
+                    }
+                });
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(String.format("...found edits in %d of %d files in %d ms", edits.size(), files.length, elapsed));
+        return edits;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -1,6 +1,7 @@
 package org.javacs.rewrite;
 
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 import org.javacs.CompilerProvider;
@@ -18,17 +19,18 @@ public class RenameField implements Rewrite {
     @Override
     public Map<Path, TextEdit[]> rewrite(CompilerProvider compiler) {
         LOG.info("Rewrite " + className + "#" + fieldName + " to " + newName + "...");
-        var paths = compiler.findMemberReferences(className, fieldName);
+        var candidates = List.of(compiler.findMemberReferences(className, fieldName));
+        var declaration = compiler.findTypeDeclaration(className);
+        var id = className + "#" + fieldName;
+        var pipeline = new RenamePipeline(compiler, id);
+        var paths = pipeline.select(candidates, List.of(declaration), id::equals);
         if (paths.length == 0) {
-            LOG.warning("...no references to " + className + "#" + fieldName);
+            LOG.warning("...no references to " + id);
             return Map.of();
         }
         LOG.info("...check " + paths.length + " files for references");
-        try (var compile = compiler.compile(paths)) {
-            var helper = new RenameHelper(compile);
-            var edits = helper.renameField(compile.roots, className, fieldName, newName);
-            return edits;
-        }
+        return pipeline.run(
+                paths, compile -> new RenameHelper(compile).renameField(compile.roots, className, fieldName, newName));
     }
 
     private static final Logger LOG = Logger.getLogger("main");
@@ -7,16 +7,18 @@ import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
@@ -46,11 +48,26 @@ class RenameHelper {
             String methodName,
             String[] erasedParameterTypes,
             String newName) {
+        return renameMethod(roots, className, methodName, erasedParameterTypes, List.of(className), newName);
+    }
+
+    /**
+     * Rename the method, and every method that overrides it or that it overrides, among the methods with the same name
+     * in `family`, which should include every supertype and subtype of `className` that declares such a method.
+     */
+    Map<Path, TextEdit[]> renameMethod(
+            List<CompilationUnitTree> roots,
+            String className,
+            String methodName,
+            String[] erasedParameterTypes,
+            Collection<String> family,
+            String newName) {
         var allEdits = new HashMap<Path, TextEdit[]>();
         var method = FindHelper.findMethod(task, className, methodName, erasedParameterTypes);
+        var methods = overrides(method, family);
         for (var root : roots) {
             var file = Paths.get(root.getSourceFile().toUri());
-            var references = findMethodReferences(root, method);
+            var references = findMethodReferences(root, methods);
             if (references.isEmpty()) continue;
             var fileEdits = replaceAll(references, newName);
             allEdits.put(file, fileEdits);
@@ -109,13 +126,50 @@ class RenameHelper {
         return true;
     }
 
-    private List<TreePath> findMethodReferences(CompilationUnitTree root, ExecutableElement find) {
+    /** `method` plus the methods in `family` that override it or are overridden by it, directly or through others */
+    private Set<ExecutableElement> overrides(ExecutableElement method, Collection<String> family) {
+        var elements = task.task.getElements();
+        var candidates = new ArrayList<ExecutableElement>();
+        for (var className : family) {
+            var type = elements.getTypeElement(className);
+            if (type == null) continue;
+            for (var member : type.getEnclosedElements()) {
+                if (member.getKind() != ElementKind.METHOD) continue;
+                if (!member.getSimpleName().contentEquals(method.getSimpleName())) continue;
+                candidates.add((ExecutableElement) member);
+            }
+        }
+        var found = new HashSet<ExecutableElement>();
+        found.add(method);
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (var candidate : candidates) {
+                if (found.contains(candidate)) continue;
+                for (var f : List.copyOf(found)) {
+                    if (overrides(candidate, f) || overrides(f, candidate)) {
+                        found.add(candidate);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private boolean overrides(ExecutableElement overrider, ExecutableElement overridden) {
+        var type = (TypeElement) overrider.getEnclosingElement();
+        return task.task.getElements().overrides(overrider, overridden, type);
+    }
+
+    private List<TreePath> findMethodReferences(CompilationUnitTree root, Set<ExecutableElement> find) {
         var trees = Trees.instance(task.task);
         var found = new ArrayList<TreePath>();
         Consumer<TreePath> forEach =
                 path -> {
                     var candidate = trees.getElement(path);
-                    if (find.equals(candidate)) {
+                    if (find.contains(candidate)) {
                         found.add(path);
                     }
                 };
@@ -168,15 +222,8 @@ class RenameHelper {
     }
 
     private long findName(CompilationUnitTree root, long startPos, CharSequence name) {
-        try {
-            var contents = root.getSourceFile().getCharContent(true);
-            var matcher = Pattern.compile("\\b" + name + "\\b").matcher(contents);
-            if (matcher.find((int) startPos)) {
-                return matcher.start();
-            }
-            return startPos;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        var offset = FindHelper.findNameIn(root, name, (int) startPos, Integer.MAX_VALUE);
+        if (offset == -1) return startPos;
+        return offset;
     }
 }
@@ -1,37 +1,92 @@
 package org.javacs.rewrite;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 import org.javacs.CompilerProvider;
+import org.javacs.TypeHierarchy;
 import org.javacs.lsp.TextEdit;
 
 public class RenameMethod implements Rewrite {
     final String className, methodName;
     final String[] erasedParameterTypes;
+    /** The parameter types from TypeHierarchy.parameterTypes, which tell overloads with as many parameters apart */
+    final List<String> parameterTypes;
     final String newName;
 
-    public RenameMethod(String className, String methodName, String[] erasedParameterTypes, String newName) {
+    public RenameMethod(
+            String className,
+            String methodName,
+            String[] erasedParameterTypes,
+            List<String> parameterTypes,
+            String newName) {
         this.className = className;
         this.methodName = methodName;
         this.erasedParameterTypes = erasedParameterTypes;
+        this.parameterTypes = parameterTypes;
         this.newName = newName;
     }
 
     @Override
     public Map<Path, TextEdit[]> rewrite(CompilerProvider compiler) {
         LOG.info("Rewrite " + className + "#" + methodName + " to " + newName + "...");
-        var paths = compiler.findMemberReferences(className, methodName);
+        var family = overrideFamily(compiler);
+        var files = new LinkedHashSet<Path>();
+        var declarations = new HashSet<Path>();
+        var prefixes = new ArrayList<String>();
+        for (var c : family) {
+            Collections.addAll(files, compiler.findMemberReferences(c, methodName));
+            declarations.add(compiler.findTypeDeclaration(c));
+            prefixes.add(c + "#" + methodName + "(");
+        }
+        var pipeline = new RenamePipeline(compiler, className + "#" + methodName);
+        var paths = pipeline.select(files, declarations, id -> prefixes.stream().anyMatch(id::startsWith));
         if (paths.length == 0) {
             LOG.warning("...no references to " + className + "#" + methodName);
             return Map.of();
         }
         LOG.info("...check " + paths.length + " files for references");
-        try (var compile = compiler.compile(paths)) {
-            var helper = new RenameHelper(compile);
-            var edits = helper.renameMethod(compile.roots, className, methodName, erasedParameterTypes, newName);
-            return edits;
+        return pipeline.run(
+                paths,
+                compile -> {
+                    var helper = new RenameHelper(compile);
+                    return helper.renameMethod(
+                            compile.roots, className, methodName, erasedParameterTypes, family, newName);
+                });
+    }
+
+    /**
+     * The workspace classes that could declare a method that overrides this one or is overridden by it: the topmost
+     * supertypes that declare a method with the same name and parameter types, and all of their subtypes.
+     */
+    private Set<String> overrideFamily(CompilerProvider compiler) {
+        var hierarchy = compiler.typeHierarchy();
+        var key = TypeHierarchy.methodKey(methodName, erasedParameterTypes.length);
+        var roots = new ArrayList<String>();
+        roots.add(className);
+        for (var d : hierarchy.supertypes(className)) {
+            if (!d.overrides(key, parameterTypes).isEmpty()) {
+                roots.add(d.className);
+            }
+        }
+        var family = new LinkedHashSet<String>(roots);
+        for (var root : roots) {
+            for (var d : hierarchy.subtypes(root)) {
+                if (!d.overrides(key, parameterTypes).isEmpty()) {
+                    family.add(d.className);
+                }
+            }
+        }
+        if (family.size() > 1) {
+            LOG.info("...also rename overrides in " + family);
         }
+        return family;
     }
 
     private static final Logger LOG = Logger.getLogger("main");
@@ -0,0 +1,81 @@
+package org.javacs.rewrite;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import org.javacs.CompileTask;
+import org.javacs.CompilerProvider;
+import org.javacs.lsp.TextEdit;
+
+/**
+ * RenamePipeline runs a workspace-wide rename in stages. First it selects candidate files, and uses the reference
+ * index to drop files that haven't changed since they were indexed and don't refer to the symbol. Then it compiles the
+ * candidates in chunks and generates each chunk's edits before that chunk is released. Only the edits are kept after
+ * that, so memory use doesn't grow with the number of files. Each stage is timed.
+ */
+class RenamePipeline {
+    private final CompilerProvider compiler;
+    private final String query;
+
+    RenamePipeline(CompilerProvider compiler, String query) {
+        this.compiler = compiler;
+        this.query = query;
+    }
+
+    /**
+     * Remove the `candidates` whose up-to-date index entry doesn't mention any symbol that satisfies `matches`. The
+     * index doesn't record declarations, so `declarations` are always kept.
+     */
+    Path[] select(Collection<Path> candidates, Collection<Path> declarations, Predicate<String> matches) {
+        var started = Instant.now();
+        var index = compiler.referenceIndex();
+        var keep = new ArrayList<Path>();
+        for (var f : candidates) {
+            if (declarations.contains(f) || !index.isFresh(f) || index.mentions(f, matches)) {
+                keep.add(f);
+            }
+        }
+        LOG.info(
+                String.format(
+                        "...selected %d of %d candidate files for %s in %d ms",
+                        keep.size(), candidates.size(), query, elapsed(started)));
+        return keep.toArray(Path[]::new);
+    }
+
+    /** Compile `files` in chunks, and collect the edits that `generate` finds in each chunk */
+    Map<Path, TextEdit[]> run(Path[] files, Function<CompileTask, Map<Path, TextEdit[]>> generate) {
+        var edits = new HashMap<Path, TextEdit[]>();
+        if (files.length == 0) return edits;
+        var started = Instant.now();
+        var generating = new long[1];
+        compiler.compileInChunks(
+                files,
+                compile -> {
+                    var generateStarted = Instant.now();
+                    edits.putAll(generate.apply(compile));
+                    generating[0] += elapsed(generateStarted);
+                });
+        var count = 0;
+        for (var fileEdits : edits.values()) {
+            count += fileEdits.length;
+        }
+        LOG.info(
+                String.format(
+                        "...attributed %d files in %d ms, generated %d edits in %d files in %d ms",
+                        files.length, elapsed(started) - generating[0], count, edits.size(), generating[0]));
+        return edits;
+    }
+
+    private static long elapsed(Instant started) {
+        return Duration.between(started, Instant.now()).toMillis();
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
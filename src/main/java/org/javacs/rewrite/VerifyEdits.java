@@ -0,0 +1,81 @@
+package org.javacs.rewrite;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.tools.Diagnostic;
+import org.javacs.CompileTask;
+import org.javacs.CompilerProvider;
+import org.javacs.FileStore;
+import org.javacs.lsp.TextEdit;
+
+/**
+ * VerifyEdits compiles the files touched by a rewrite twice: once as they are now, and once with the edits applied in
+ * memory. It reports the errors in every file that has more errors afterwards. The files are compiled in chunks, so a
+ * rename across thousands of files doesn't need them all in memory at once. The edited contents of every touched file
+ * are given to the file manager, so a chunk that refers to a file in another chunk still sees its edits.
+ */
+public class VerifyEdits {
+
+    /** Errors that `edits` would introduce, as "File.java:line: message" */
+    public static List<String> newErrors(CompilerProvider compiler, Map<Path, TextEdit[]> edits) {
+        var started = Instant.now();
+        var files = new ArrayList<Path>(edits.keySet());
+        var before = new HashMap<Path, List<String>>();
+        var after = new HashMap<Path, List<String>>();
+        compiler.compileInChunks(files.toArray(Path[]::new), task -> errors(task, before));
+        var edited = new HashMap<Path, String>();
+        for (var f : files) {
+            edited.put(f, apply(FileStore.contents(f), edits.get(f)));
+        }
+        compiler.compileInChunks(files.toArray(Path[]::new), edited, task -> errors(task, after));
+        var found = new ArrayList<String>();
+        for (var f : files) {
+            var countBefore = before.getOrDefault(f, List.of()).size();
+            var errorsAfter = after.getOrDefault(f, List.of());
+            if (errorsAfter.size() > countBefore) {
+                found.addAll(errorsAfter);
+            }
+        }
+        var elapsed = Duration.between(started, Instant.now()).toMillis();
+        LOG.info(
+                String.format(
+                        "...verified %d files in %d ms, found %d new errors", files.size(), elapsed, found.size()));
+        return found;
+    }
+
+    private static void errors(CompileTask task, Map<Path, List<String>> errors) {
+        for (var d : task.diagnostics) {
+            if (d.getKind() != Diagnostic.Kind.ERROR || d.getSource() == null) continue;
+            var file = Paths.get(d.getSource().toUri());
+            var message = file.getFileName() + ":" + d.getLineNumber() + ": " + d.getMessage(Locale.getDefault());
+            errors.computeIfAbsent(file, __ -> new ArrayList<>()).add(message);
+        }
+    }
+
+    /** Apply `edits`, which must not overlap, to `contents` */
+    static String apply(String contents, TextEdit[] edits) {
+        var sorted = Arrays.copyOf(edits, edits.length);
+        Comparator<TextEdit> byStart = Comparator.comparingInt(e -> e.range.start.line);
+        byStart = byStart.thenComparingInt(e -> e.range.start.character);
+        Arrays.sort(sorted, byStart.reversed());
+        var result = new StringBuilder(contents);
+        for (var e : sorted) {
+            var start = FileStore.offset(contents, e.range.start.line + 1, e.range.start.character + 1);
+            var end = FileStore.offset(contents, e.range.end.line + 1, e.range.end.character + 1);
+            result.replace(start, end, e.newText);
+        }
+        return result.toString();
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}